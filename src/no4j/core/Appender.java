@@ -2,7 +2,8 @@ package no4j.core;
 
 /**
  * Generic log appender. Loggers forward messages to the {@link Appender#log} method
- * to be further used with more advanced, usually framework-specific constructs
+ * to be further used with more advanced, usually framework-specific constructs.
+ * A {@link LogMessage#isReusable reusable} message must be {@link LogMessage#copy copied} to be kept after the call.
  */
 
 public interface Appender {
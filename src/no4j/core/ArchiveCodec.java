@@ -0,0 +1,71 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses rolled log files in the background, see {@link FileAppender#setArchiveCodec}.
+ * Implementations must be thread-safe, archives may be compressed concurrently.
+ */
+public interface ArchiveCodec {
+    /**
+     * Extension appended to the name of the rolled file, including the dot
+     */
+    String getExtension();
+
+    /**
+     * Compresses the whole input into the output. Neither stream is closed.
+     */
+    void compress(InputStream in, OutputStream out) throws IOException;
+
+    /**
+     * Compresses the whole input into the output using up to <code>parallelism</code> threads.
+     * Codecs which can't split their work compress on the calling thread.
+     */
+    default void compress(InputStream in, OutputStream out, int parallelism) throws IOException {
+        compress(in, out);
+    }
+
+    /**
+     * Gzip (.gz) at the given level from 1 (fastest) to 9 (smallest), or {@link Deflater#DEFAULT_COMPRESSION}.
+     * Compresses in parallel, see {@link FileAppender#setArchiveParallelism}
+     */
+    static ArchiveCodec gzip(int level) {
+        return new GZipCodec(level);
+    }
+
+    /**
+     * LZ4 frame (.lz4). Several times faster than gzip at a lower compression ratio.
+     */
+    static ArchiveCodec lz4() {
+        return new Lz4Codec();
+    }
+
+    /**
+     * Returns a codec by its name (case-insensitive): <code>lz4</code>, <code>gzip</code>
+     * or <code>gzip:level</code>. If not found null is returned.
+     */
+    static ArchiveCodec byName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String lowerCase = name.trim().toLowerCase();
+        if (lowerCase.equals("lz4")) {
+            return lz4();
+        }
+        if (lowerCase.equals("gzip")) {
+            return gzip(Deflater.DEFAULT_COMPRESSION);
+        }
+        if (lowerCase.startsWith("gzip:")) {
+            try {
+                int level = Integer.parseInt(lowerCase.substring(5));
+                return level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION ? gzip(level) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes the oldest archives of a log file which exceed the retention limits. Runs on the {@link Archiver}.
+ * <p>
+ * Archives are the siblings of the log file named <code>{timestamp}_[{sequence}_]{file name}{suffix}</code>
+ * with any of the given suffixes,
+ * including those rolled by earlier versions, without milliseconds in the timestamp.
+ * The {@link BlockGZip#indexPath index} of a deleted archive is deleted along with it.
+ * They're ordered by last modification time and kept from the newest one
+ * until any of the limits is exceeded. A limit of 0 means no limit.
+ * </p>
+ */
+final class ArchivePruner {
+    private static final String TIMESTAMP = "\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}(-\\d{3})?_(\\d+_)?";
+
+    private final Path directory;
+    private final Pattern archiveName;
+    private final int maxCount;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+
+    ArchivePruner(Path directory, String fileName, String[] suffixes, int maxCount, long maxAgeMillis, long maxBytes) {
+        StringBuilder alternatives = new StringBuilder();
+        for (String suffix : suffixes) {
+            alternatives.append(alternatives.length() == 0 ? "" : "|").append(Pattern.quote(suffix));
+        }
+        this.directory = directory;
+        this.archiveName = Pattern.compile(TIMESTAMP + Pattern.quote(fileName) + "(" + alternatives + ")");
+        this.maxCount = maxCount;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the number of deleted archives
+     */
+    int prune() throws IOException {
+        List<Archive> archives = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!archiveName.matcher(file.getFileName().toString()).matches()) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    archives.add(new Archive(file, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                }
+            }
+        }
+        archives.sort((a, b) -> a.lastModified != b.lastModified
+                ? Long.compare(b.lastModified, a.lastModified)
+                : b.path.getFileName().compareTo(a.path.getFileName()));
+
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        int kept = 0, deleted = 0;
+        for (Archive archive : archives) {
+            totalBytes += archive.size;
+            boolean keep = (maxCount == 0 || kept < maxCount)
+                    && (maxAgeMillis == 0 || now - archive.lastModified <= maxAgeMillis)
+                    && (maxBytes == 0 || totalBytes <= maxBytes);
+            if (keep) {
+                kept++;
+            } else if (Files.deleteIfExists(archive.path)) {
+                Files.deleteIfExists(BlockGZip.indexPath(archive.path));
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static final class Archive {
+        final Path path;
+        final long lastModified;
+        final long size;
+
+        Archive(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Runs archiving work (compression of rolled files) on a dedicated background thread,
+ * so that rolling doesn't stall threads writing to the log file.
+ * <p>
+ * The queue of pending tasks is bounded. Tasks are submitted while the rolling appender holds its lock,
+ * so when the queue is full (or after shutdown) the task is dropped and reported rather than run or waited for
+ * by the caller: the rolled file is kept as it is. Pending tasks are awaited when the JVM exits.
+ * </p>
+ */
+final class Archiver {
+    static final int QUEUE_CAPACITY = 64;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "no4j-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        ShutdownHooks.register(Archiver.class, ShutdownHooks.ARCHIVE, () -> {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+    }
+
+    interface Task {
+        void run() throws IOException;
+    }
+
+    private Archiver() {
+    }
+
+    /**
+     * Schedules the task. Failures are passed to the handler, as is the rejection of a task which can't be queued.
+     *
+     * @param name describes the task in the report of a rejection
+     * @return future completed once the task has finished, successfully or not, cancelled if it was rejected
+     */
+    static Future<?> submit(String name, Task task, ExceptionHandler handler) {
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                handler.handle(e);
+            }
+            return null;
+        });
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+            handler.handle(new IOException("Archiver queue is full or shut down, dropped " + name));
+        }
+        return future;
+    }
+}
@@ -0,0 +1,265 @@
+package no4j.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free, bounded multi-producer single-consumer ring buffer used by asynchronous loggers.
+ * Callers only claim a slot and publish a {@link LogMessage}, a single daemon drainer thread
+ * performs formatting and I/O by handing every message to the sink.
+ * <p>
+ * The queue is bounded both by the number of slots and by the estimated number of bytes held,
+ * what happens when either bound is exceeded is decided by the logger's {@link OverflowPolicy}.
+ * </p>
+ */
+public class AsyncQueue {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int SPINS = 64;
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    private final int capacity;
+    private final int mask;
+    private final LogMessage[] slots;
+    /**
+     * Per slot messages which {@link LogMessage#isReusable reusable} messages are copied into, created on first use
+     */
+    private final LogMessage[] pooled;
+    /**
+     * Per slot sequence numbers. A slot at position <var>p</var> is free to be claimed when its sequence equals
+     * <var>p</var> and ready to be consumed when it equals <var>p + 1</var>
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+    private volatile long head = 0;
+    private volatile long processed = 0;
+
+    private final AtomicLong queuedBytes = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final Consumer<LogMessage> sink;
+    private final Worker drainer;
+    private volatile boolean waiting;
+
+    /**
+     * Creates the queue and starts its drainer thread.
+     *
+     * @param capacity number of slots, rounded up to the nearest power of two
+     * @param sink     receives every published message on the drainer thread
+     */
+    public AsyncQueue(int capacity, Consumer<LogMessage> sink, String name) {
+        this.capacity = ceilPowerOfTwo(Math.max(capacity, 2));
+        this.mask = this.capacity - 1;
+        this.slots = new LogMessage[this.capacity];
+        this.pooled = new LogMessage[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.sink = sink;
+        this.drainer = new Worker("no4j-async-" + name, this::drain, ShutdownHooks.DRAIN,
+                () -> awaitDrained(ShutdownHooks.EXIT_TIMEOUT_MILLIS));
+        this.drainer.start();
+    }
+
+    /**
+     * Publishes a message. When the queue is full the behavior is dictated by the config's overflow policy.
+     *
+     * @return <tt>true</tt> if the message was accepted, <tt>false</tt> if it was dropped
+     */
+    public boolean offer(LogMessage message, LoggerConfig config) {
+        if (drainer.runsInline()) {
+            sink.accept(message);
+            return true;
+        }
+        long size = estimateSize(message);
+        if (tryPublish(message, size, config.asyncBufferBytes)) {
+            return true;
+        }
+        switch (config.overflowPolicy) {
+            case DROP:
+                dropped.incrementAndGet();
+                return false;
+            case DROP_BELOW_LEVEL:
+                if (message.level.value > config.overflowLevel.value) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                return publishBlocking(message, size, config.asyncBufferBytes);
+            case BLOCK:
+            default:
+                return publishBlocking(message, size, config.asyncBufferBytes);
+        }
+    }
+
+    /**
+     * Waits for room in the queue. Once the queue is shut down the message is handed to the sink directly.
+     */
+    private boolean publishBlocking(LogMessage message, long size, long maxBytes) {
+        while (!tryPublish(message, size, maxBytes)) {
+            if (!drainer.isRunning()) {
+                sink.accept(message);
+                return true;
+            }
+            drainer.unpark();
+            LockSupport.parkNanos(this, Worker.PARK_NANOS / 16);
+        }
+        return true;
+    }
+
+    private boolean tryPublish(LogMessage message, long size, long maxBytes) {
+        long total = queuedBytes.addAndGet(size);
+        if (total > maxBytes && total != size) {
+            // A single message larger than the bound is let through when the queue is empty
+            queuedBytes.addAndGet(-size);
+            return false;
+        }
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                queuedBytes.addAndGet(-size);
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        if (message.isReusable()) {
+            // The caller reuses its message once this returns
+            LogMessage copy = pooled[index];
+            if (copy == null) {
+                copy = LogMessage.reusable();
+                pooled[index] = copy;
+            }
+            copy.copyFrom(message);
+            message = copy;
+        }
+        slots[index] = message;
+        sequences.set(index, pos + 1);
+        if (waiting) {
+            drainer.unpark();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the message at the head without freeing its slot, see {@link #release}
+     */
+    private LogMessage peek() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        return slots[index];
+    }
+
+    /**
+     * Frees the head slot once its message was handled, only then may a producer overwrite its pooled message.
+     * The pooled message drops its references first, so that delivered messages can be collected.
+     */
+    private void release() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (slots[index] == pooled[index]) {
+            slots[index].release();
+        }
+        slots[index] = null;
+        sequences.set(index, pos + capacity);
+        head = pos + 1;
+    }
+
+    private void drain() {
+        int idle = 0;
+        while (drainer.isRunning() || !isEmpty()) {
+            LogMessage message = peek();
+            if (message != null) {
+                idle = 0;
+                long size = estimateSize(message);
+                try {
+                    sink.accept(message);
+                } catch (RuntimeException e) {
+                    Logger.getInternalLogger().error("Async sink failed: " + e);
+                }
+                release();
+                queuedBytes.addAndGet(-size);
+                processed = head;
+                continue;
+            }
+            if (++idle < SPINS) {
+                Thread.yield();
+                continue;
+            }
+            waiting = true;
+            if (isEmpty() && drainer.isRunning()) {
+                LockSupport.parkNanos(this, Worker.PARK_NANOS);
+            }
+            waiting = false;
+        }
+    }
+
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * Waits until every message published so far has been handed to the sink.
+     *
+     * @return <tt>true</tt> if the queue drained within the timeout
+     */
+    public boolean awaitDrained(long timeoutMillis) {
+        long target = tail.get();
+        return drainer.await(() -> processed >= target, timeoutMillis);
+    }
+
+    /**
+     * Stops accepting messages into the ring buffer, drains what is left and terminates the drainer thread.
+     * Messages logged afterwards are written synchronously.
+     */
+    public void shutdown(long timeoutMillis) {
+        drainer.shutdown(timeoutMillis);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * Returns the number of messages discarded due to the overflow policy
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    static long estimateSize(LogMessage message) {
+        long size = MESSAGE_OVERHEAD;
+        if (message.message != null) {
+            size += 2L * message.message.length();
+        }
+        if (message.stack != null) {
+            size += (long) MESSAGE_OVERHEAD * message.stack.length;
+        }
+        if (message.params != null) {
+            size += (long) MESSAGE_OVERHEAD * message.params.length;
+        }
+        return size;
+    }
+
+    private static int ceilPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
@@ -0,0 +1,30 @@
+package no4j.core;
+
+import java.util.List;
+
+/**
+ * Appender which receives messages in batches, to amortize the cost of a call to the destination
+ * (a network round trip, a database transaction). Batches are filled and delivered on a background thread
+ * by {@link BatchingAppender}, see {@link Logger#addAppender(BatchAppender, int, long)}.
+ * <p>
+ * With {@link LoggerConfig#setAppenderBatching} plain appenders are adapted when they're added,
+ * an {@link Appender} which also implements this interface then receives whole batches.
+ * </p>
+ */
+public interface BatchAppender {
+    /**
+     * Receives the messages in the order they were logged. The list is only valid during the call.
+     */
+    void log(List<LogMessage> batch);
+
+    /**
+     * Adapts a single-message appender, which then receives the messages of a batch one by one
+     */
+    static BatchAppender of(Appender appender) {
+        return batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                appender.log(batch.get(i));
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+package no4j.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects messages into batches for a {@link BatchAppender}. A batch is delivered on a daemon worker thread
+ * once it holds <code>maxBatchSize</code> messages, or once <code>lingerMillis</code> passed since its first message.
+ * <p>
+ * Messages wait in a bounded queue. When it's full, the logging thread waits for the worker,
+ * so no message is lost. Pending messages are delivered when the JVM exits.
+ * </p>
+ */
+public class BatchingAppender implements Appender {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_LINGER_MILLIS = 100;
+
+    private final BatchAppender appender;
+    /**
+     * The plain appender this one was created for by {@link #adapt}, <tt>null</tt> otherwise
+     */
+    private final Appender adapted;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ArrayBlockingQueue<LogMessage> queue;
+    private final AtomicLong accepted = new AtomicLong(0);
+    private volatile long delivered = 0;
+    /**
+     * Number of accepted messages somebody waits for, see {@link #awaitDelivered}. Batches are not held back until then.
+     */
+    private volatile long flushTarget = 0;
+    private final Worker worker;
+
+    public BatchingAppender(BatchAppender appender, int maxBatchSize, long lingerMillis) {
+        this(appender, maxBatchSize, lingerMillis, AsyncQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates the appender and starts its worker thread
+     *
+     * @param capacity maximum number of messages waiting to be delivered
+     */
+    public BatchingAppender(BatchAppender appender, int maxBatchSize, long lingerMillis, int capacity) {
+        this(appender, null, maxBatchSize, lingerMillis, capacity);
+    }
+
+    private BatchingAppender(BatchAppender appender, Appender adapted, int maxBatchSize, long lingerMillis,
+                             int capacity) {
+        this.appender = appender;
+        this.adapted = adapted;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, this.maxBatchSize));
+        this.worker = new Worker("no4j-batch-" + appender.getClass().getSimpleName(), this::work,
+                ShutdownHooks.DELIVER, () -> awaitDelivered(ShutdownHooks.EXIT_TIMEOUT_MILLIS));
+        this.worker.start();
+    }
+
+    /**
+     * Wraps a plain appender, which receives whole batches if it also implements {@link BatchAppender}
+     */
+    static BatchingAppender adapt(Appender appender, int maxBatchSize, long lingerMillis) {
+        BatchAppender batchAppender = appender instanceof BatchAppender
+                ? (BatchAppender) appender
+                : BatchAppender.of(appender);
+        return new BatchingAppender(batchAppender, appender, maxBatchSize, lingerMillis, AsyncQueue.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public void log(LogMessage message) {
+        if (worker.runsInline()) {
+            deliver(Collections.singletonList(message));
+            return;
+        }
+        accepted.incrementAndGet();
+        try {
+            queue.put(message.isReusable() ? message.copy() : message);
+        } catch (InterruptedException e) {
+            accepted.decrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        ArrayList<LogMessage> batch = new ArrayList<>(maxBatchSize);
+        List<LogMessage> view = Collections.unmodifiableList(batch);
+        while (worker.isRunning() || !queue.isEmpty()) {
+            LogMessage first;
+            try {
+                first = queue.poll(Worker.PARK_NANOS, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            fill(batch);
+            deliver(view);
+            delivered += batch.size();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Adds messages until the batch is full or its linger time ran out
+     */
+    private void fill(ArrayList<LogMessage> batch) {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || !worker.isRunning() || flushTarget > delivered) {
+                return;
+            }
+            try {
+                LogMessage next = queue.poll(Math.min(remaining, Worker.PARK_NANOS), TimeUnit.NANOSECONDS);
+                if (next != null) {
+                    batch.add(next);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private void deliver(List<LogMessage> batch) {
+        try {
+            appender.log(batch);
+        } catch (RuntimeException e) {
+            Logger.getInternalLogger().error("Batch appender failed: " + e);
+        }
+    }
+
+    /**
+     * Waits until every message accepted so far has been delivered, without waiting for batches to fill up
+     *
+     * @return <tt>true</tt> if the messages were delivered within the timeout
+     */
+    public boolean awaitDelivered(long timeoutMillis) {
+        long target = accepted.get();
+        if (flushTarget < target) {
+            flushTarget = target;
+        }
+        return worker.await(() -> delivered >= target, timeoutMillis);
+    }
+
+    /**
+     * Delivers pending messages and terminates the worker thread.
+     * Messages logged afterwards are delivered synchronously, one per batch.
+     */
+    public void shutdown(long timeoutMillis) {
+        worker.shutdown(timeoutMillis);
+    }
+
+    public BatchAppender getBatchAppender() {
+        return appender;
+    }
+
+    /**
+     * Returns the plain appender wrapped due to {@link LoggerConfig#setAppenderBatching}, <tt>null</tt> if there's none
+     */
+    public Appender getAdaptedAppender() {
+        return adapted;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getLingerMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lingerNanos);
+    }
+
+    /**
+     * Returns the number of messages waiting to be delivered
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+}
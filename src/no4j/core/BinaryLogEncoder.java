@@ -0,0 +1,189 @@
+package no4j.core;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import static no4j.core.BinaryLogFormat.*;
+
+/**
+ * Encodes messages into the records of {@link BinaryLogFormat}. Holds the dictionary of the segment
+ * being written, so it belongs to a single file and must be {@link #reset} when a new one is started.
+ * Not thread-safe, {@link FileAppender} encodes under its lock.
+ */
+final class BinaryLogEncoder {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    private final HashMap<StackTraceElement, Integer> frames = new HashMap<>();
+    private final HashMap<Integer, Integer> levels = new HashMap<>();
+    private final StringBuilder text = new StringBuilder(256);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer body = ByteBuffer.allocate(1024);
+    private ByteBuffer out = ByteBuffer.allocate(4096);
+    private int nextId;
+    private boolean started;
+    private long timeSecond;
+    private long baseNanos;
+
+    /**
+     * Starts a new segment with the next message
+     */
+    void reset() {
+        strings.clear();
+        frames.clear();
+        levels.clear();
+        started = false;
+    }
+
+    /**
+     * Encodes the message along with the dictionary entries it uses for the first time
+     *
+     * @return buffer ready to be written, valid until the next call
+     */
+    ByteBuffer encode(LogMessage msg, int maxMessageLength, int maxStackTraceDepth) {
+        out.clear();
+        if (!started) {
+            startSegment();
+        }
+        if (msg.epochSecond != timeSecond) {
+            timeSecond = msg.epochSecond;
+            baseNanos = msg.epochSecond * NANOS_PER_SECOND + msg.nano;
+            body.clear();
+            body.putLong(baseNanos);
+            writeRecord(TIME);
+        }
+        long nanos = msg.epochSecond * NANOS_PER_SECOND + msg.nano;
+        int level = defineLevel(msg.level);
+        int method = defineString(msg.method);
+        StackTraceElement[] stack = msg.stack;
+        int depth = stack == null ? 0 : Math.min(stack.length, maxStackTraceDepth);
+        for (int i = 0; i < depth; i++) {
+            defineFrame(stack[i]);
+        }
+
+        text.setLength(0);
+        MessageFormatter.format(text, msg.message, msg.params);
+        if (text.length() > maxMessageLength) {
+            text.setLength(maxMessageLength);
+        }
+        body.clear();
+        ensureBody(40 + 5 * depth + text.length() * 3);
+        putVarLong(body, zigZag(nanos - baseNanos));
+        putVarLong(body, level);
+        putVarLong(body, method);
+        putVarLong(body, depth);
+        for (int i = 0; i < depth; i++) {
+            putVarLong(body, frames.get(stack[i]));
+        }
+        putUtf8(body, text);
+        writeRecord(EVENT);
+        out.flip();
+        return out;
+    }
+
+    private void startSegment() {
+        nextId = 1;
+        started = true;
+        body.clear();
+        body.put(MAGIC).put(VERSION);
+        writeRecord(SEGMENT);
+        // Forces a TIME record
+        timeSecond = Long.MIN_VALUE;
+    }
+
+    private int defineLevel(Level level) {
+        if (Level.toLevel(level.value) == level || levels.containsKey(level.value)) {
+            return level.value;
+        }
+        int name = defineString(level.name);
+        levels.put(level.value, name);
+        body.clear();
+        putVarLong(body, level.value);
+        putVarLong(body, name);
+        writeRecord(LEVEL);
+        return level.value;
+    }
+
+    private int defineString(String string) {
+        if (string == null) {
+            return 0;
+        }
+        Integer id = strings.get(string);
+        if (id != null) {
+            return id;
+        }
+        id = nextId++;
+        strings.put(string, id);
+        body.clear();
+        ensureBody(5 + string.length() * 3);
+        putVarLong(body, id);
+        putUtf8(body, string);
+        writeRecord(STRING);
+        return id;
+    }
+
+    private void defineFrame(StackTraceElement frame) {
+        if (frames.containsKey(frame)) {
+            return;
+        }
+        int className = defineString(frame.getClassName());
+        int methodName = defineString(frame.getMethodName());
+        int fileName = defineString(frame.getFileName());
+        int id = nextId++;
+        frames.put(frame, id);
+        body.clear();
+        putVarLong(body, id);
+        putVarLong(body, className);
+        putVarLong(body, methodName);
+        putVarLong(body, fileName);
+        putVarLong(body, zigZag(frame.getLineNumber()));
+        writeRecord(FRAME);
+    }
+
+    private void writeRecord(byte type) {
+        body.flip();
+        int length = body.remaining();
+        if (out.remaining() < length + MAX_ENVELOPE_LENGTH) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length + 64));
+            out.flip();
+            out = grown.put(out);
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(body.array(), body.arrayOffset(), length);
+        out.put(SYNC).put(type);
+        putVarLong(out, length);
+        out.put(body);
+        out.putInt((int) crc.getValue());
+        out.put(END);
+    }
+
+    private void ensureBody(int capacity) {
+        if (body.capacity() < capacity) {
+            body = ByteBuffer.allocate(Math.max(capacity, body.capacity() * 2));
+        }
+    }
+
+    private static void putUtf8(ByteBuffer out, CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                        .put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package no4j.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of binary log files, written by {@link BinaryLogEncoder} and read by {@link BinaryLogReader}.
+ * <p>
+ * A file is a sequence of records:
+ * <pre>
+ * SYNC (0xB7) | type (1 byte) | body length (varint) | body | CRC32 of type and body (4 bytes) | END ('\n')
+ * </pre>
+ * Record types and their bodies, integers are unsigned varints unless stated otherwise:
+ * <ul>
+ *     <li>SEGMENT: "NO4J", version (1 byte). Starts a file, or the part appended after reopening it.
+ *     Clears the dictionary.</li>
+ *     <li>TIME: epoch nanos (8 bytes). Base of the time deltas of the following events, written once per second,
+ *     so a lost event doesn't shift the time of the next ones.</li>
+ *     <li>STRING: id, UTF-8 text. Defines a dictionary entry used as a method name.</li>
+ *     <li>FRAME: id, class id, method id, file id (0 if unknown), line (zigzag). Defines a stack frame.</li>
+ *     <li>LEVEL: value, name id. Defines a custom level.</li>
+ *     <li>EVENT: nanos since the last TIME (zigzag), level value, method id, frame count, frame ids, UTF-8 message.</li>
+ * </ul>
+ * Dictionary ids start from 1 in every segment, each entry is defined once before its first use.
+ * A reader which meets a damaged record skips to the next SYNC byte which starts a valid record.
+ * </p>
+ */
+final class BinaryLogFormat {
+    static final byte SYNC = (byte) 0xB7;
+    static final byte END = '\n';
+    static final byte[] MAGIC = {'N', 'O', '4', 'J'};
+    static final byte VERSION = 1;
+    static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
+    // SYNC, type, up to 4 bytes of length, CRC and END
+    static final int MAX_ENVELOPE_LENGTH = 1 + 1 + 4 + 4 + 1;
+
+    static final byte SEGMENT = 1;
+    static final byte TIME = 2;
+    static final byte STRING = 3;
+    static final byte FRAME = 4;
+    static final byte LEVEL = 5;
+    static final byte EVENT = 6;
+
+    private BinaryLogFormat() {
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * @return the value, or -1 if the varint is malformed or runs past the limit
+     */
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64 && in.hasRemaining(); shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,317 @@
+package no4j.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import static no4j.core.BinaryLogFormat.*;
+
+/**
+ * Decodes files written in {@link FileFormat#BINARY}, see {@link BinaryLogFormat} for the layout.
+ * Damaged records (torn writes of a crashed process, flipped bits) are skipped,
+ * reading resumes at the next record whose checksum is valid.
+ * <p>
+ * Also a command line tool which renders binary logs (or their .gz archives) in the text layout:
+ * <pre>
+ * java no4j.core.BinaryLogReader [-d date_pattern] file...
+ * </pre>
+ * </p>
+ */
+public class BinaryLogReader implements Closeable {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    // Varint bytes needed for MAX_BODY_LENGTH
+    private static final int MAX_LENGTH_SIZE = 4;
+
+    private final InputStream in;
+    private final CachedFormatter timestamps;
+    private final HashMap<Long, String> strings = new HashMap<>();
+    private final HashMap<Long, StackTraceElement> frames = new HashMap<>();
+    private final HashMap<Long, Level> levels = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int position;
+    private int limit;
+    private boolean eof;
+    private long baseNanos;
+    private long skippedBytes;
+
+    public BinaryLogReader(InputStream in) {
+        this(in, LoggerConfig.FULL_DATE_MILLIS_FORMATTER);
+    }
+
+    /**
+     * @param formatter renders {@link LogMessage#getTime} of the decoded messages
+     */
+    public BinaryLogReader(InputStream in, DateTimeFormatter formatter) {
+        this.in = in;
+        this.timestamps = new CachedFormatter(formatter);
+    }
+
+    /**
+     * Opens a binary log, or its archive if the name ends with <code>.gz</code>
+     */
+    public static BinaryLogReader open(Path path, DateTimeFormatter formatter) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (path.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, INITIAL_CAPACITY);
+        }
+        return new BinaryLogReader(in, formatter);
+    }
+
+    /**
+     * Returns the next message, or <tt>null</tt> at the end of the input
+     */
+    public LogMessage next() throws IOException {
+        while (true) {
+            if (!fill(1)) {
+                return null;
+            }
+            if (buffer[position] != SYNC) {
+                skip(1);
+                continue;
+            }
+            int recordLength = validRecordLength();
+            if (recordLength < 0) {
+                skip(1);
+                continue;
+            }
+            byte type = buffer[position + 1];
+            int bodyStart = position + 2 + varIntLength(position + 2);
+            ByteBuffer body = ByteBuffer.wrap(buffer, bodyStart, position + recordLength - 5 - bodyStart);
+            position += recordLength;
+            LogMessage message;
+            try {
+                message = read(type, body);
+            } catch (RuntimeException e) {
+                // Checksum matched, yet the content doesn't make sense. Skip the whole record
+                skippedBytes += recordLength;
+                continue;
+            }
+            if (message != null) {
+                return message;
+            }
+        }
+    }
+
+    /**
+     * Number of bytes which didn't belong to any valid record so far
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return length of the whole record at the current position, or -1 if the record is damaged
+     */
+    private int validRecordLength() throws IOException {
+        fill(2 + MAX_LENGTH_SIZE);
+        if (limit - position < 3) {
+            return -1;
+        }
+        int lengthSize = varIntLength(position + 2);
+        if (lengthSize < 0) {
+            return -1;
+        }
+        long bodyLength = getVarLong(ByteBuffer.wrap(buffer, position + 2, lengthSize));
+        if (bodyLength < 0 || bodyLength > MAX_BODY_LENGTH) {
+            return -1;
+        }
+        int recordLength = 2 + lengthSize + (int) bodyLength + 4 + 1;
+        if (!fill(recordLength) || buffer[position + recordLength - 1] != END) {
+            return -1;
+        }
+        int bodyStart = position + 2 + lengthSize;
+        crc.reset();
+        crc.update(buffer[position + 1]);
+        crc.update(buffer, bodyStart, (int) bodyLength);
+        int expected = ByteBuffer.wrap(buffer, bodyStart + (int) bodyLength, 4).getInt();
+        return (int) crc.getValue() == expected ? recordLength : -1;
+    }
+
+    /**
+     * @return number of bytes of the length varint starting at the offset, -1 if it's longer than allowed
+     */
+    private int varIntLength(int offset) {
+        int max = Math.min(limit - offset, MAX_LENGTH_SIZE);
+        for (int i = 0; i < max; i++) {
+            if (buffer[offset + i] >= 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private LogMessage read(byte type, ByteBuffer body) {
+        switch (type) {
+            case SEGMENT:
+                byte[] magic = new byte[MAGIC.length];
+                body.get(magic);
+                if (!Arrays.equals(magic, MAGIC) || body.get() > VERSION) {
+                    throw new IllegalArgumentException("Unsupported segment");
+                }
+                strings.clear();
+                frames.clear();
+                levels.clear();
+                baseNanos = 0;
+                return null;
+            case TIME:
+                baseNanos = body.getLong();
+                return null;
+            case STRING:
+                long stringId = getId(body);
+                strings.put(stringId, utf8(body));
+                return null;
+            case FRAME:
+                long frameId = getId(body);
+                String className = strings.get(getId(body));
+                String methodName = strings.get(getId(body));
+                String fileName = strings.get(getId(body));
+                int line = (int) unZigZag(getId(body));
+                if (className != null && methodName != null) {
+                    frames.put(frameId, new StackTraceElement(className, methodName, fileName, line));
+                }
+                return null;
+            case LEVEL:
+                long value = getId(body);
+                String name = strings.get(getId(body));
+                levels.put(value, toLevel(value, name));
+                return null;
+            case EVENT:
+                return readEvent(body);
+            default:
+                // A record type of a later version
+                return null;
+        }
+    }
+
+    /**
+     * Events are never logged at OFF or below, such a value means the record is corrupt
+     */
+    private static Level toLevel(long value, String name) {
+        if (value <= Level.OFF.value || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid level " + value);
+        }
+        Level level = Level.toLevel((int) value);
+        return level == null ? Level.custom((int) value, name) : level;
+    }
+
+    private LogMessage readEvent(ByteBuffer body) {
+        long nanos = baseNanos + unZigZag(getId(body));
+        long levelValue = getId(body);
+        Level level = levels.get(levelValue);
+        if (level == null) {
+            level = toLevel(levelValue, String.valueOf(levelValue));
+        }
+        String method = strings.getOrDefault(getId(body), "");
+        int depth = (int) Math.min(getId(body), body.remaining());
+        StackTraceElement[] stack = depth > 0 ? new StackTraceElement[depth] : null;
+        int resolved = 0;
+        for (int i = 0; i < depth; i++) {
+            StackTraceElement frame = frames.get(getId(body));
+            if (frame != null) {
+                stack[resolved++] = frame;
+            }
+        }
+        if (resolved < depth) {
+            stack = Arrays.copyOf(stack, resolved);
+        }
+        long epochSecond = Math.floorDiv(nanos, NANOS_PER_SECOND);
+        int nano = (int) Math.floorMod(nanos, NANOS_PER_SECOND);
+        LogMessage message = new LogMessage(null, level, utf8(body), method, stack);
+        message.epochSecond = epochSecond;
+        message.nano = nano;
+        message.timestamps = timestamps;
+        return message;
+    }
+
+    private static long getId(ByteBuffer body) {
+        long id = getVarLong(body);
+        if (id < 0) {
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        return id;
+    }
+
+    private static String utf8(ByteBuffer body) {
+        return new String(body.array(), body.position(), body.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private void skip(int bytes) {
+        position += bytes;
+        skippedBytes += bytes;
+    }
+
+    /**
+     * Makes sure at least <code>bytes</code> are buffered from the current position
+     *
+     * @return <tt>false</tt> if the input ended first
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (limit - position >= bytes) {
+            return true;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (buffer.length < bytes) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+        }
+        while (limit < bytes && !eof) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+        return limit >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        DateTimeFormatter formatter = LoggerConfig.FULL_DATE_MILLIS_FORMATTER;
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-d")) {
+            formatter = DateTimeFormatter.ofPattern(args[1]).withZone(LoggerConfig.FULL_DATE_FORMATTER.getZone());
+            first = 2;
+        }
+        if (first == args.length) {
+            System.err.println("Usage: java no4j.core.BinaryLogReader [-d date_pattern] file...");
+            System.exit(1);
+        }
+        Logger layout = Logger.getAnonymousLogger();
+        layout.getConfig().setFormatter(formatter);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), INITIAL_CAPACITY);
+        StringBuilder text = new StringBuilder(256);
+        for (int i = first; i < args.length; i++) {
+            try (BinaryLogReader reader = open(Paths.get(args[i]), formatter)) {
+                LogMessage message;
+                while ((message = reader.next()) != null) {
+                    text.setLength(0);
+                    layout.formatMessage(message, false, text);
+                    out.append(text);
+                }
+                if (reader.getSkippedBytes() > 0) {
+                    out.flush();
+                    System.err.println(args[i] + ": skipped " + reader.getSkippedBytes() + " damaged bytes");
+                }
+            }
+        }
+        out.flush();
+    }
+}
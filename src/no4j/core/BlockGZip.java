@@ -0,0 +1,175 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Block compressed log files written in {@link FileMode#GZIP} mode.
+ * <p>
+ * The file is a sequence of gzip members, each compressing at most {@link #MAX_BLOCK_SIZE} bytes,
+ * so it can be read by any gzip tool. Like in BGZF, every member carries its compressed size
+ * in a <code>BC</code> extra field, so the file can be walked member by member.
+ * </p>
+ * <p>
+ * A sidecar file ({@link #indexPath}) holds an entry per member: its offset in the file,
+ * the uncompressed offset of its first byte and the time of its first write, as three big-endian longs.
+ * The index allows {@link #openAt reading} from an uncompressed offset or from a point in time
+ * by inflating a single member before it.
+ * </p>
+ */
+public final class BlockGZip {
+    /**
+     * Largest uncompressed block, leaves room for the header and deflate overhead in the 16-bit member size
+     */
+    public static final int MAX_BLOCK_SIZE = 0xFF00;
+    public static final String INDEX_SUFFIX = ".idx";
+
+    static final int HEADER_SIZE = 18;
+    static final int INDEX_ENTRY_SIZE = 24;
+
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final byte CM_DEFLATE = 8;
+    private static final byte FLG_EXTRA = 4;
+    private static final byte OS_UNKNOWN = (byte) 0xFF;
+
+    private BlockGZip() {
+    }
+
+    public static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Opens the file for reading, starting from the given uncompressed offset.
+     * Only the member containing the offset is inflated to get there.
+     */
+    public static InputStream openAt(Path file, long offset) throws IOException {
+        long[] entries = readIndex(file);
+        int entry = -1;
+        for (int low = 0, high = entries.length / 3 - 1; low <= high; ) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid * 3 + 1] <= offset) {
+                entry = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (entry == -1) {
+            return skipFully(open(file, 0), offset);
+        }
+        return skipFully(open(file, entries[entry * 3]), offset - entries[entry * 3 + 1]);
+    }
+
+    /**
+     * Opens the file for reading, starting from the first block that may contain messages written at
+     * or after the given time. The stream may start with a few earlier messages, as well as
+     * in the middle of a message.
+     */
+    public static InputStream openAt(Path file, Instant time) throws IOException {
+        long[] entries = readIndex(file);
+        long millis = time.toEpochMilli();
+        long start = 0;
+        // Blocks are written in order, times only go back if the clock does
+        for (int i = 0; i < entries.length; i += 3) {
+            if (entries[i + 2] > millis) {
+                break;
+            }
+            start = entries[i];
+        }
+        return open(file, start);
+    }
+
+    private static InputStream open(Path file, long compressedOffset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            channel.position(compressedOffset);
+            return new GZIPInputStream(Channels.newInputStream(channel), 8192);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static InputStream skipFully(InputStream in, long bytes) throws IOException {
+        try {
+            while (bytes > 0) {
+                long skipped = in.skip(bytes);
+                if (skipped <= 0) {
+                    break;
+                }
+                bytes -= skipped;
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns index entries flattened into triples of (offset, uncompressed offset, millis)
+     */
+    private static long[] readIndex(Path file) throws IOException {
+        Path index = indexPath(file);
+        if (!Files.exists(index)) {
+            return new long[0];
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(index));
+        long[] entries = new long[bytes.remaining() / INDEX_ENTRY_SIZE * 3];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = bytes.getLong();
+        }
+        return entries;
+    }
+
+    static void putHeader(ByteBuffer out, int memberSize) {
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putShort(0, (short) GZIP_MAGIC);
+        out.put(2, CM_DEFLATE);
+        out.put(3, FLG_EXTRA);
+        out.putInt(4, 0); // MTIME
+        out.put(8, (byte) 0); // XFL
+        out.put(9, OS_UNKNOWN);
+        out.putShort(10, (short) 6); // XLEN
+        out.put(12, (byte) 'B');
+        out.put(13, (byte) 'C');
+        out.putShort(14, (short) 2);
+        out.putShort(16, (short) (memberSize - 1));
+    }
+
+    /**
+     * Reads the size of the member starting at the offset
+     *
+     * @return the size, or 0 if it doesn't start with a header written by {@link #putHeader}
+     */
+    static int readMemberSize(FileChannel channel, ByteBuffer header, long offset) throws IOException {
+        readFully(channel, header, offset);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        boolean matches = (header.getShort(0) & 0xFFFF) == GZIP_MAGIC
+                && header.get(2) == CM_DEFLATE
+                && (header.get(3) & FLG_EXTRA) != 0
+                && header.getShort(10) == 6
+                && header.get(12) == 'B' && header.get(13) == 'C'
+                && header.getShort(14) == 2;
+        return matches ? (header.getShort(16) & 0xFFFF) + 1 : 0;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        bytes.clear();
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) {
+                throw new IOException("Unexpected end of " + channel);
+            }
+        }
+    }
+}
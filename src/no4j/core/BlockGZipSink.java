@@ -0,0 +1,186 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Sink which compresses writes on the fly into a sequence of independent gzip members, see {@link BlockGZip}.
+ * <p>
+ * Bytes are collected in a block of at most {@link BlockGZip#MAX_BLOCK_SIZE} bytes which is compressed
+ * into a member when it fills up or when it's flushed. Every member is followed by an entry in the index.
+ * When opened, members written after the last indexed one (e.g. before a crash) are indexed
+ * and a member cut short is truncated.
+ * </p>
+ */
+final class BlockGZipSink implements FileSink {
+    private static final int MAX_MEMBER_SIZE = BlockGZip.HEADER_SIZE + BlockGZip.MAX_BLOCK_SIZE + 1024;
+
+    private final FileChannel channel;
+    private final FileChannel index;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] block = new byte[BlockGZip.MAX_BLOCK_SIZE];
+    private final byte[] member = new byte[MAX_MEMBER_SIZE];
+    private final ByteBuffer entry = ByteBuffer.allocate(BlockGZip.INDEX_ENTRY_SIZE);
+    private int blockLength;
+    private long blockStarted;
+    private long compressedLength;
+    private long uncompressedLength;
+    private long indexLength;
+
+    BlockGZipSink(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            index = FileChannel.open(BlockGZip.indexPath(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        try {
+            recover(Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the end of the last complete member and indexes members which are missing from the index
+     */
+    private void recover(long lastModified) throws IOException {
+        long entries = index.size() / BlockGZip.INDEX_ENTRY_SIZE;
+        indexLength = entries * BlockGZip.INDEX_ENTRY_SIZE;
+        index.truncate(indexLength);
+        long offset = 0, uncompressed = 0;
+        boolean indexed = false;
+        if (entries > 0) {
+            BlockGZip.readFully(index, entry, (entries - 1) * BlockGZip.INDEX_ENTRY_SIZE);
+            offset = entry.getLong(0);
+            uncompressed = entry.getLong(8);
+            indexed = true;
+        }
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(BlockGZip.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while (offset < size) {
+            int memberSize = offset + BlockGZip.HEADER_SIZE <= size
+                    ? BlockGZip.readMemberSize(channel, header, offset) : -1;
+            if (memberSize == 0) {
+                // Not written by this sink, leave it intact and only append
+                offset = size;
+                break;
+            }
+            if (memberSize < 0 || offset + memberSize > size) {
+                channel.truncate(offset);
+                if (indexed) {
+                    indexLength -= BlockGZip.INDEX_ENTRY_SIZE;
+                    index.truncate(indexLength);
+                }
+                break;
+            }
+            BlockGZip.readFully(channel, trailer, offset + memberSize - 4);
+            if (!indexed) {
+                writeEntry(offset, uncompressed, lastModified);
+            }
+            indexed = false;
+            uncompressed += trailer.getInt(0) & 0xFFFFFFFFL;
+            offset += memberSize;
+        }
+        compressedLength = offset;
+        uncompressedLength = uncompressed;
+    }
+
+    @Override
+    public void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (blockLength == 0) {
+                blockStarted = System.currentTimeMillis();
+            }
+            int len = Math.min(bytes.remaining(), block.length - blockLength);
+            bytes.get(block, blockLength, len);
+            blockLength += len;
+            if (blockLength == block.length) {
+                writeMember();
+            }
+        }
+    }
+
+    @Override
+    public int pending() {
+        return blockLength;
+    }
+
+    /**
+     * Returns the uncompressed length, so that the roll size means the same in every mode
+     */
+    @Override
+    public long length() {
+        return uncompressedLength + blockLength;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (blockLength > 0) {
+            writeMember();
+        }
+    }
+
+    private void writeMember() throws IOException {
+        crc.reset();
+        crc.update(block, 0, blockLength);
+        deflater.reset();
+        deflater.setInput(block, 0, blockLength);
+        deflater.finish();
+        int size = BlockGZip.HEADER_SIZE;
+        while (!deflater.finished()) {
+            size += deflater.deflate(member, size, member.length - 8 - size);
+        }
+        ByteBuffer out = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(size, (int) crc.getValue());
+        out.putInt(size + 4, blockLength);
+        size += 8;
+        BlockGZip.putHeader(out, size);
+        out.limit(size);
+
+        long offset = compressedLength;
+        while (out.hasRemaining()) {
+            channel.write(out, offset + out.position());
+        }
+        compressedLength += size;
+        writeEntry(offset, uncompressedLength, blockStarted);
+        uncompressedLength += blockLength;
+        blockLength = 0;
+    }
+
+    private void writeEntry(long offset, long uncompressed, long millis) throws IOException {
+        entry.clear();
+        entry.putLong(offset).putLong(uncompressed).putLong(millis).flip();
+        while (entry.hasRemaining()) {
+            index.write(entry, indexLength + entry.position());
+        }
+        indexLength += BlockGZip.INDEX_ENTRY_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            deflater.end();
+            try {
+                channel.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+}
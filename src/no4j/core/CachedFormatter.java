@@ -0,0 +1,143 @@
+package no4j.core;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Caches the output of a {@link DateTimeFormatter} for the most recent second.
+ * Sub-second fields (such as <code>SSS</code>) are patched into the cached text instead of formatting again,
+ * which reduces the cost of rendering a timestamp to a comparison and a copy.
+ * <p>
+ * For every newly seen second the formatter is probed to locate the digits that depend on the nanosecond
+ * field. If they cannot be located reliably (e.g. multiple or variable-width sub-second fields)
+ * every timestamp of that second is formatted in full, so the output always matches the formatter.
+ * Because entries are keyed by the epoch second, zone offset transitions (DST) are handled as well.
+ * </p>
+ * The cache is lock-free: entries are immutable and published through a volatile field.
+ */
+final class CachedFormatter {
+    private static final int PROBE_NANOS = 123_456_789;
+    private static final int SECOND_PROBE_NANOS = 987_654_321;
+    private static final String PROBE_DIGITS = "123456789";
+    private static final String SECOND_PROBE_DIGITS = "987654321";
+
+    final DateTimeFormatter formatter;
+    private volatile Entry last;
+
+    CachedFormatter(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    String format(Instant instant) {
+        return format(instant.getEpochSecond(), instant.getNano());
+    }
+
+    String format(long epochSecond, int nanos) {
+        Entry entry = entryFor(epochSecond);
+        if (entry.digits == 0) {
+            return entry.text;
+        }
+        if (entry.digits < 0) {
+            return formatter.format(Instant.ofEpochSecond(epochSecond, nanos));
+        }
+        char[] chars = entry.text.toCharArray();
+        writeDigits(chars, entry.start, entry.digits, nanos);
+        return new String(chars);
+    }
+
+    /**
+     * Appends the formatted timestamp to the builder. Doesn't allocate unless the second changed
+     * or the pattern's sub-second fields can't be patched.
+     */
+    void formatTo(long epochSecond, int nanos, StringBuilder out) {
+        Entry entry = entryFor(epochSecond);
+        if (entry.digits == 0) {
+            out.append(entry.text);
+            return;
+        }
+        if (entry.digits < 0) {
+            out.append(formatter.format(Instant.ofEpochSecond(epochSecond, nanos)));
+            return;
+        }
+        out.append(entry.text, 0, entry.start);
+        int divisor = 100_000_000;
+        for (int i = 0; i < entry.digits; i++) {
+            out.append((char) ('0' + nanos / divisor % 10));
+            divisor /= 10;
+        }
+        out.append(entry.text, entry.start + entry.digits, entry.text.length());
+    }
+
+    private Entry entryFor(long epochSecond) {
+        Entry entry = last;
+        if (entry == null || entry.second != epochSecond) {
+            entry = probe(epochSecond);
+            last = entry;
+        }
+        return entry;
+    }
+
+    private Entry probe(long epochSecond) {
+        String zero = formatter.format(Instant.ofEpochSecond(epochSecond, 0));
+        String probe = formatter.format(Instant.ofEpochSecond(epochSecond, PROBE_NANOS));
+        if (zero.equals(probe)) {
+            return new Entry(epochSecond, zero, 0, 0);
+        }
+        String secondProbe = formatter.format(Instant.ofEpochSecond(epochSecond, SECOND_PROBE_NANOS));
+        int length = zero.length();
+        if (probe.length() != length || secondProbe.length() != length) {
+            return new Entry(epochSecond, zero, 0, -1);
+        }
+        int start = 0;
+        while (zero.charAt(start) == probe.charAt(start)) {
+            start++;
+        }
+        int end = length;
+        while (zero.charAt(end - 1) == probe.charAt(end - 1)) {
+            end--;
+        }
+        int digits = end - start;
+        boolean patchable = digits <= PROBE_DIGITS.length()
+                && probe.regionMatches(start, PROBE_DIGITS, 0, digits)
+                && secondProbe.regionMatches(start, SECOND_PROBE_DIGITS, 0, digits)
+                && isZeros(zero, start, end);
+        return new Entry(epochSecond, zero, start, patchable ? digits : -1);
+    }
+
+    private static boolean isZeros(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeDigits(char[] chars, int start, int digits, int nanos) {
+        int divisor = 100_000_000;
+        for (int i = 0; i < digits; i++) {
+            chars[start + i] = (char) ('0' + nanos / divisor % 10);
+            divisor /= 10;
+        }
+    }
+
+    private static final class Entry {
+        final long second;
+        final String text;
+        /**
+         * Index of the first sub-second digit
+         */
+        final int start;
+        /**
+         * Number of sub-second digits to patch, 0 if the text doesn't depend on them, -1 if they can't be patched
+         */
+        final int digits;
+
+        Entry(long second, String text, int start, int digits) {
+            this.second = second;
+            this.text = text;
+            this.start = start;
+            this.digits = digits;
+        }
+    }
+}
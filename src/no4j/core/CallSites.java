@@ -0,0 +1,54 @@
+package no4j.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns ids to the stack frames log calls are made from. Ids are stable for the lifetime of the JVM,
+ * they let sinks and caches refer to a call site with a single integer.
+ * Id 0 stands for an unknown call site, also returned once {@link #MAX_SITES} sites have been registered.
+ */
+final class CallSites {
+    static final int MAX_SITES = 1 << 16;
+
+    private static final ConcurrentHashMap<StackTraceElement, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile StackTraceElement[] sites = new StackTraceElement[256];
+    private static int count = 1;
+
+    private CallSites() {
+    }
+
+    static int idOf(StackTraceElement site) {
+        if (site == null) {
+            return 0;
+        }
+        Integer id = ids.get(site);
+        return id != null ? id : register(site);
+    }
+
+    /**
+     * Returns the frame of the call site, <tt>null</tt> if the id is unknown
+     */
+    static StackTraceElement get(int id) {
+        StackTraceElement[] sites = CallSites.sites;
+        return id > 0 && id < sites.length ? sites[id] : null;
+    }
+
+    private static synchronized int register(StackTraceElement site) {
+        Integer id = ids.get(site);
+        if (id != null) {
+            return id;
+        }
+        if (count >= MAX_SITES) {
+            return 0;
+        }
+        StackTraceElement[] sites = CallSites.sites;
+        if (count == sites.length) {
+            sites = Arrays.copyOf(sites, sites.length * 2);
+        }
+        sites[count] = site;
+        CallSites.sites = sites;
+        ids.put(site, count);
+        return count++;
+    }
+}
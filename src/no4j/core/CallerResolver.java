@@ -0,0 +1,118 @@
+package no4j.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Finds the stack frame of the code that made a log call by skipping frames of the logging framework
+ * and of registered wrapper classes.
+ * <p>
+ * On Java 9 and later the frames are walked lazily with <code>StackWalker</code>, only the frames up to the caller
+ * are materialized. The walker is looked up reflectively, so the library keeps targeting Java 8, where it falls back
+ * to capturing the whole stack with {@link Thread#getStackTrace()}.
+ * </p>
+ */
+final class CallerResolver {
+    private static final Set<String> ignoredClasses = ConcurrentHashMap.newKeySet();
+
+    static {
+        ignoredClasses.add(CallerResolver.class.getName());
+        ignoredClasses.add(Logger.class.getName());
+        ignoredClasses.add(Thread.class.getName());
+    }
+
+    /**
+     * <code>StackWalker.walk</code> bound to a walker instance, <tt>null</tt> on Java 8
+     */
+    private static final MethodHandle walk;
+    private static final MethodHandle getClassName;
+    private static final MethodHandle toStackTraceElement;
+
+    static {
+        MethodHandle walkHandle = null, classNameHandle = null, elementHandle = null;
+        try {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            Object walker = lookup.findStatic(walkerClass, "getInstance", MethodType.methodType(walkerClass))
+                    .invoke();
+            walkHandle = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                    .bindTo(walker)
+                    .asType(MethodType.methodType(Object.class, Function.class));
+            classNameHandle = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+            elementHandle = lookup.findVirtual(frameClass, "toStackTraceElement",
+                            MethodType.methodType(StackTraceElement.class))
+                    .asType(MethodType.methodType(StackTraceElement.class, Object.class));
+        } catch (Throwable ignored) {
+            // Java 8
+            walkHandle = null;
+        }
+        walk = walkHandle;
+        getClassName = classNameHandle;
+        toStackTraceElement = elementHandle;
+    }
+
+    private static final Function<Stream<Object>, StackTraceElement> findCaller = frames -> frames
+            .filter(frame -> !ignoredClasses.contains(className(frame)))
+            .findFirst()
+            .map(CallerResolver::toElement)
+            .orElse(null);
+
+    private CallerResolver() {
+    }
+
+    /**
+     * Frames of the given class will be skipped when looking for the caller
+     */
+    static void ignore(Class<?> cls) {
+        ignoredClasses.add(cls.getName());
+    }
+
+    static boolean isWalkerAvailable() {
+        return walk != null;
+    }
+
+    /**
+     * Returns the element of the first frame outside the logging framework or <tt>null</tt> if it can't be found
+     */
+    static StackTraceElement resolve() {
+        if (walk != null) {
+            try {
+                Object caller = walk.invokeExact(findCaller);
+                return (StackTraceElement) caller;
+            } catch (Throwable ignored) {
+                // fall back to capturing the whole stack
+            }
+        }
+        StackTraceElement[] stack = Thread.currentThread().getStackTrace();
+        for (StackTraceElement element : stack) {
+            if (!ignoredClasses.contains(element.getClassName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static String className(Object frame) {
+        try {
+            return (String) getClassName.invokeExact(frame);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static StackTraceElement toElement(Object frame) {
+        try {
+            return (StackTraceElement) toStackTraceElement.invokeExact(frame);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Sink which coalesces writes in direct buffers before writing them to a file channel.
+ * <p>
+ * Pending bytes are spread over up to {@link #MAX_CHUNKS} chunks taken from a pool shared by all sinks,
+ * so a message that doesn't fit in the current chunk continues in the next one instead of forcing a flush.
+ * All pending chunks are committed with a single gathering write. Being direct, the chunks are passed to
+ * the operating system without the copy the JDK makes for heap buffers.
+ * </p>
+ */
+final class ChannelSink implements FileSink {
+    static final int CHUNK_SIZE = 16 * 1024;
+    static final int MAX_CHUNKS = 4;
+    static final int BUFFER_SIZE = CHUNK_SIZE * MAX_CHUNKS;
+
+    private static final int POOL_CAPACITY = 64;
+    private static final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    private final FileChannel channel;
+    // One more slot for a message written past the chunks, see write
+    private final ByteBuffer[] chunks = new ByteBuffer[MAX_CHUNKS + 1];
+    private int count;
+    private int pending;
+
+    ChannelSink(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                StandardOpenOption.WRITE);
+    }
+
+    static ByteBuffer acquireChunk() {
+        ByteBuffer chunk = pool.poll();
+        return chunk == null ? ByteBuffer.allocateDirect(CHUNK_SIZE) : chunk;
+    }
+
+    static void releaseChunk(ByteBuffer chunk) {
+        chunk.clear();
+        pool.offer(chunk);
+    }
+
+    @Override
+    public void write(ByteBuffer bytes) throws IOException {
+        int len = bytes.remaining();
+        if (len >= CHUNK_SIZE) {
+            // Too large to be coalesced, it's written as is along with what's pending
+            writeGathering(bytes);
+            return;
+        }
+        ByteBuffer chunk = count == 0 ? null : chunks[count - 1];
+        if (chunk == null || chunk.remaining() < len) {
+            if (count == MAX_CHUNKS) {
+                flush();
+            }
+            chunk = acquireChunk();
+            chunks[count++] = chunk;
+        }
+        chunk.put(bytes);
+        pending += len;
+    }
+
+    @Override
+    public int pending() {
+        return pending;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return channel.size() + pending;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        writeGathering(null);
+    }
+
+    /**
+     * Commits pending chunks followed by the extra buffer (if any) in as few system calls as possible
+     */
+    private void writeGathering(ByteBuffer extra) throws IOException {
+        int length = count;
+        for (int i = 0; i < count; i++) {
+            chunks[i].flip();
+        }
+        if (extra != null) {
+            chunks[length++] = extra;
+        }
+        try {
+            int offset = 0;
+            while (offset < length) {
+                channel.write(chunks, offset, length - offset);
+                while (offset < length && !chunks[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } finally {
+            chunks[count] = null;
+            for (int i = 0; i < count; i++) {
+                releaseChunk(chunks[i]);
+                chunks[i] = null;
+            }
+            count = 0;
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package no4j.core;
+
+import java.util.Arrays;
+
+final class CompositeTriggeringPolicy implements TriggeringPolicy {
+    private final TriggeringPolicy[] policies;
+
+    CompositeTriggeringPolicy(TriggeringPolicy[] policies) {
+        this.policies = policies.clone();
+    }
+
+    @Override
+    public boolean isTriggered(long size, long nowMillis) {
+        for (TriggeringPolicy policy : policies) {
+            if (policy.isTriggered(size, nowMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void started(long startMillis) {
+        for (TriggeringPolicy policy : policies) {
+            policy.started(startMillis);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "anyOf" + Arrays.toString(policies);
+    }
+}
@@ -1,16 +1,36 @@
 package no4j.core;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <code>Console</code> holds output streams and color configurations for each log level.
  * The default sinks - STDOUT and STDERR can be changed which streamlines debugging or mocking.
+ * <p>
+ * With {@link #setDirectOutput direct output} enabled, messages are encoded to UTF-8 once and written
+ * to the standard descriptors through a {@link ConsoleSink}, bypassing {@link PrintStream}.
+ * Streams replaced with {@link #setStdOut}/{@link #setStdErr} are always written through the stream.
+ * </p>
  */
 
 public class Console {
     private volatile boolean useColor = false;
     protected PrintStream stdOut;
     protected PrintStream stdErr;
+    private final PrintStream defaultOut;
+    private final PrintStream defaultErr;
+
+    private volatile boolean directOutput = false;
+    private volatile long flushInterval = 0;
+    private volatile ConsoleSink outSink;
+    private volatile ConsoleSink errSink;
+    private FileChannel outChannel = ConsoleSink.STDOUT;
+    private FileChannel errChannel = ConsoleSink.STDERR;
+    private ScheduledFuture<?> tick;
 
     private Color unreachable = Color.of(Color.FG_BRIGHT_WHITE, Color.BG_BLACK);
     private Color fatal = Color.fgUnderline(Color.FG_RED);
@@ -20,9 +40,17 @@ public class Console {
     private Color debug = Color.fg(Color.FG_MAGENTA);
     private Color custom = Color.fg(Color.FG_GREEN);
 
+    /**
+     * Colors indexed by {@link LevelPrefixes#index}. Replaced as a whole whenever a color changes,
+     * so that tables built from it can tell they're stale by identity.
+     */
+    volatile Color[] palette = buildPalette();
+
     private Console(PrintStream stdOut, PrintStream stdErr) {
         this.stdOut = stdOut;
         this.stdErr = stdErr;
+        this.defaultOut = stdOut;
+        this.defaultErr = stdErr;
     }
 
     public void setStdOut(PrintStream out) {
@@ -49,24 +77,120 @@ public class Console {
         stream.print(text);
     }
 
-    public Color getColorByLevel(Level level) {
-        switch (level.value) {
-            case Level.UNREACHABLE_VALUE:
-                return unreachable;
-            case Level.FATAL_VALUE:
-                return fatal;
-            case Level.ERROR_VALUE:
-                return error;
-            case Level.WARN_VALUE:
-                return warning;
-            case Level.INFO_VALUE:
-                return info;
-            case Level.DEBUG_VALUE:
-                return debug;
-            default:
-                // synonymous with CUSTOM
-                return custom;
+    /**
+     * Whether messages to the given stream can be written as bytes with {@link #write}
+     */
+    boolean writesDirectly(boolean toStdErr) {
+        return directOutput && (toStdErr ? stdErr == defaultErr : stdOut == defaultOut);
+    }
+
+    /**
+     * Writes UTF-8 encoded bytes to the standard output or error. Falls back to the stream if the write fails.
+     */
+    void write(ByteBuffer bytes, boolean toStdErr) {
+        ConsoleSink sink = toStdErr ? errSink : outSink;
+        if (sink != null) {
+            try {
+                sink.write(bytes);
+                return;
+            } catch (IOException e) {
+                directOutput = false;
+            }
+        }
+        byte[] array = new byte[bytes.remaining()];
+        bytes.get(array);
+        PrintStream stream = toStdErr ? stdErr : stdOut;
+        stream.write(array, 0, array.length);
+        stream.flush();
+    }
+
+    /**
+     * Writes console output buffered in direct mode
+     */
+    public void flush() {
+        try {
+            ConsoleSink sink = outSink;
+            if (sink != null) {
+                sink.flush();
+            }
+            sink = errSink;
+            if (sink != null) {
+                sink.flush();
+            }
+        } catch (IOException e) {
+            directOutput = false;
+        }
+    }
+
+    /**
+     * Writes messages to the standard output and error descriptors directly, as UTF-8. Disabled by default.
+     */
+    public synchronized void setDirectOutput(boolean enabled) {
+        if (enabled == directOutput) {
+            return;
+        }
+        directOutput = enabled;
+        openSinks();
+    }
+
+    public boolean isDirectOutput() {
+        return directOutput;
+    }
+
+    /**
+     * In direct mode buffers the standard output and writes it every <code>millis</code> milliseconds
+     * on a background thread, or once the buffer is full. 0 writes every message immediately, the default.
+     * The standard error is never buffered.
+     */
+    public synchronized void setFlushInterval(long millis) {
+        millis = Math.max(0, millis);
+        if (millis == flushInterval) {
+            return;
         }
+        flushInterval = millis;
+        openSinks();
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Replaces the channels of the standard descriptors written in direct mode, the caller closes them
+     */
+    synchronized void setDirectChannels(FileChannel out, FileChannel err) {
+        outChannel = out;
+        errChannel = err;
+        openSinks();
+    }
+
+    private void openSinks() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+        ConsoleSink previous = outSink;
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (!directOutput) {
+            outSink = null;
+            errSink = null;
+            return;
+        }
+        outSink = new ConsoleSink(outChannel, flushInterval > 0);
+        errSink = new ConsoleSink(errChannel, false);
+        if (flushInterval > 0) {
+            tick = FileAppender.ticker.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Color getColorByLevel(Level level) {
+        return palette[LevelPrefixes.index(level)];
     }
 
     public void enableColor(boolean enabled) {
@@ -77,42 +201,49 @@ public class Console {
         return useColor;
     }
 
-    public void setUnreachable(Color unreachable) {
+    public synchronized void setUnreachable(Color unreachable) {
         if (unreachable == null) return;
         this.unreachable = unreachable;
+        palette = buildPalette();
     }
 
-    public void setFatal(Color fatal) {
+    public synchronized void setFatal(Color fatal) {
         if (fatal == null) return;
         this.fatal = fatal;
+        palette = buildPalette();
     }
 
-    public void setError(Color error) {
+    public synchronized void setError(Color error) {
         if (error == null) return;
         this.error = error;
+        palette = buildPalette();
     }
 
-    public void setWarning(Color warning) {
+    public synchronized void setWarning(Color warning) {
         if (warning == null) return;
         this.warning = warning;
+        palette = buildPalette();
     }
 
-    public void setInfo(Color info) {
+    public synchronized void setInfo(Color info) {
         if (info == null) return;
         this.info = info;
+        palette = buildPalette();
     }
 
-    public void setDebug(Color debug) {
+    public synchronized void setDebug(Color debug) {
         if (debug == null) return;
         this.debug = debug;
+        palette = buildPalette();
     }
 
-    public void setCustom(Color custom) {
+    public synchronized void setCustom(Color custom) {
         if (custom == null) return;
         this.custom = custom;
+        palette = buildPalette();
     }
 
-    public void inheritColors(Console console) {
+    public synchronized void inheritColors(Console console) {
         unreachable = console.unreachable;
         fatal = console.fatal;
         error = console.error;
@@ -120,6 +251,11 @@ public class Console {
         info = console.info;
         debug = console.debug;
         custom = console.custom;
+        palette = buildPalette();
+    }
+
+    private Color[] buildPalette() {
+        return new Color[]{unreachable, fatal, error, warning, info, debug, custom};
     }
 
     public void resetPrint() {
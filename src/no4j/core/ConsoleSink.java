@@ -0,0 +1,85 @@
+package no4j.core;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes encoded bytes straight to the channel of the standard output or error descriptor,
+ * bypassing the lock, the charset encoder and the line flushing of {@link java.io.PrintStream}.
+ * <p>
+ * Unbuffered sinks write every message with a single channel write. Buffered sinks coalesce messages
+ * in a direct buffer which is written once full or on {@link #flush}, and at the latest when the JVM exits.
+ * </p>
+ */
+final class ConsoleSink {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Never closed, closing would close the descriptor itself
+    static final FileChannel STDOUT = new FileOutputStream(FileDescriptor.out).getChannel();
+    static final FileChannel STDERR = new FileOutputStream(FileDescriptor.err).getChannel();
+
+    private final FileChannel channel;
+    private final boolean buffered;
+    private ByteBuffer buffer;
+
+    ConsoleSink(FileChannel channel, boolean buffered) {
+        this.channel = channel;
+        this.buffered = buffered;
+        if (buffered) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ShutdownHooks.register(this, ShutdownHooks.FLUSH, () -> {
+                try {
+                    flush();
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes or buffers the remaining bytes, which are consumed
+     */
+    synchronized void write(ByteBuffer bytes) throws IOException {
+        if (!buffered) {
+            writeFully(bytes);
+            return;
+        }
+        if (bytes.remaining() > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (bytes.remaining() > buffer.remaining()) {
+            writeFully(bytes);
+            return;
+        }
+        buffer.put(bytes);
+    }
+
+    synchronized void flush() throws IOException {
+        if (buffered) {
+            flushBuffer();
+        }
+    }
+
+    void close() throws IOException {
+        flush();
+        ShutdownHooks.unregister(this);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        try {
+            writeFully(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
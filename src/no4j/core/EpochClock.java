@@ -0,0 +1,33 @@
+package no4j.core;
+
+/**
+ * Allocation-free wall clock with sub-millisecond precision. {@link System#nanoTime} is shifted onto the epoch
+ * and kept within the millisecond reported by {@link System#currentTimeMillis}, which corrects drift
+ * and adjustments of the system clock without ever reporting a different millisecond.
+ */
+final class EpochClock {
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private static volatile long offset = System.currentTimeMillis() * NANOS_PER_MILLI - System.nanoTime();
+
+    private EpochClock() {
+    }
+
+    /**
+     * Returns nanoseconds since the epoch
+     */
+    static long epochNanos() {
+        long millis = System.currentTimeMillis();
+        long nanoTime = System.nanoTime();
+        long nanos = nanoTime + offset;
+        long start = millis * NANOS_PER_MILLI;
+        if (nanos < start) {
+            nanos = start;
+            offset = start - nanoTime;
+        } else if (nanos >= start + NANOS_PER_MILLI) {
+            nanos = start + NANOS_PER_MILLI - 1;
+            offset = nanos - nanoTime;
+        }
+        return nanos;
+    }
+}
@@ -1,28 +1,50 @@
 package no4j.core;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.file.*;
 import java.nio.file.spi.FileSystemProvider;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Queue;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 /**
  * Responsible for writing to files, rolling behavior and compression.
- * This class uses a synchronized file output stream.
+ * All writes are synchronized. The way bytes reach the file depends on the {@link FileMode}.
+ * In the default {@link FileMode#CHANNEL} mode writes are coalesced in a buffer
+ * and committed to the file according to the flush policy:
+ * <ul>
+ *     <li>once at least {@link #setFlushBytes flushBytes} are pending</li>
+ *     <li>every {@link #setFlushInterval flushInterval} milliseconds by a background ticker</li>
+ *     <li>immediately for messages at or above the {@link #setFlushLevel flushLevel} severity</li>
+ * </ul>
+ * By default every write is flushed immediately, except in {@link FileMode#GZIP} mode where blocks are
+ * only compressed once full, since every flush ends a gzip member.
  */
 public class FileAppender {
     private static final int MIN_ROLL_SIZE = 1024;
     private static final int DEFAULT_ROLL_SIZE = 4 * 1024 * 1024;
-    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = ChannelSink.BUFFER_SIZE;
 
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss_")
+    // Extensions of archives which may have been written with another codec, or by earlier versions
+    private static final String[] ARCHIVE_EXTENSIONS = {".gz", ".lz4", ".zip"};
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS_")
             .withZone(ZoneId.systemDefault());
 
+    static final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "no4j-flush-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final HashSet<StandardOpenOption> WRITE_OPTIONS = new HashSet<StandardOpenOption>(3) {{
         add(StandardOpenOption.CREATE);
         add(StandardOpenOption.APPEND);
@@ -37,13 +59,40 @@ public class FileAppender {
         isAttached = false;
     };
 
+    private ExceptionHandler archiveHandler = e -> Logger.getInternalLogger().exception(e);
+    private final Queue<Future<?>> archives = new ConcurrentLinkedQueue<>();
+
     private volatile Path outputPath;
-    private volatile OutputStream out;
+    private volatile FileSink sink;
+    private volatile FileMode mode = FileMode.CHANNEL;
+    private volatile FileFormat format = FileFormat.TEXT;
+    private final BinaryLogEncoder binaryEncoder = new BinaryLogEncoder();
+    private volatile int regionSize = MappedSink.DEFAULT_REGION_SIZE;
     private final AtomicLong cursor = new AtomicLong(0);
 
     private volatile boolean isAttached;
     private volatile boolean isRolling;
     private volatile long rollSize = DEFAULT_ROLL_SIZE;
+    private volatile boolean compressArchives = true;
+    private volatile ArchiveCodec codec = ArchiveCodec.gzip(Deflater.DEFAULT_COMPRESSION);
+    private volatile int archiveParallelism = 1;
+    private final TriggeringPolicy sizePolicy = (size, nowMillis) -> size >= rollSize;
+    private volatile TriggeringPolicy policy = sizePolicy;
+    private volatile TriggeringPolicy customPolicy;
+    private volatile RollInterval rollInterval;
+    private long fileStarted;
+
+    private volatile int maxArchives = 0;
+    private volatile long maxArchiveAge = 0;
+    private volatile long maxArchiveBytes = 0;
+
+    /**
+     * Threshold set with {@link #setFlushBytes}, negative for the default of the mode, see {@link #getFlushBytes}
+     */
+    private volatile long flushBytes = -1;
+    private volatile long flushInterval = 0;
+    private volatile Level flushLevel = Level.ERROR;
+    private ScheduledFuture<?> tick;
 
     public FileAppender() {
     }
@@ -51,39 +100,137 @@ public class FileAppender {
     /**
      * Consistent with {@link Files#write} without additional fuss
      */
-    public synchronized void logToFile(byte[] bytes) {
+    public void logToFile(byte[] bytes) {
+        logToFile(bytes, null);
+    }
+
+    /**
+     * Writes the bytes of a message logged at the given level. The level decides whether the write
+     * is flushed immediately, see {@link #setFlushLevel}
+     */
+    public void logToFile(byte[] bytes, Level level) {
+        logToFile(ByteBuffer.wrap(bytes), level);
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer, which are consumed. Intended for reusable (direct) buffers
+     * as the content is copied before this method returns.
+     */
+    public synchronized void logToFile(ByteBuffer bytes, Level level) {
         if (!isAttached) {
             return;
         }
         try {
-            int len = bytes.length;
-            int rem = len;
-            while (rem > 0) {
-                int written = Math.min(rem, BUFFER_SIZE);
-                out.write(bytes, len - rem, written);
-                cursor.addAndGet(written);
-                rem -= written;
-            }
-            if (isRolling && cursor.get() >= rollSize) {
+            int len = bytes.remaining();
+            sink.write(bytes);
+            cursor.addAndGet(len);
+            if (isRolling && policy.isTriggered(cursor.get(), System.currentTimeMillis())) {
                 roll();
+            } else if (shouldFlush(level)) {
+                sink.flush();
             }
-            out.flush();
         } catch (IOException e) {
             handler.handle(e);
         }
     }
 
-    public void setExceptionHandler(ExceptionHandler handler) {
-        if (handler != null) {
-            this.handler = handler;
+    /**
+     * Encodes the message into the records of {@link FileFormat#BINARY} and writes them.
+     * The dictionary of the file is kept by this appender, so the whole file must be written through it.
+     */
+    synchronized void logToFile(LogMessage message, int maxMessageLength, int maxStackTraceDepth) {
+        if (!isAttached) {
+            return;
         }
+        logToFile(binaryEncoder.encode(message, maxMessageLength, maxStackTraceDepth), message.level);
     }
 
-    private void refreshCursor() throws IOException {
-        if (Files.isRegularFile(outputPath)) {
-            cursor.set(Files.size(outputPath));
-        } else {
-            cursor.set(0);
+    private boolean shouldFlush(Level level) {
+        return sink.pending() >= getFlushBytes() || level != null && level.value <= flushLevel.value;
+    }
+
+    /**
+     * Commits all buffered bytes to the file
+     */
+    public synchronized void flush() {
+        if (!isAttached) {
+            return;
+        }
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            handler.handle(e);
+        }
+    }
+
+    /**
+     * Flushes once at least the given number of bytes is buffered. 0 flushes every write.
+     * Values are capped by the size of the buffer, negative values restore the default of the mode.
+     */
+    public void setFlushBytes(long bytes) {
+        flushBytes = bytes < 0 ? -1 : Math.min(bytes, BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the flush threshold. Unless set, 0 or in {@link FileMode#GZIP} mode a full block,
+     * which the sink compresses on its own, so that small writes don't each become a gzip member.
+     */
+    public long getFlushBytes() {
+        long bytes = flushBytes;
+        if (bytes >= 0) {
+            return bytes;
+        }
+        return mode == FileMode.GZIP ? BlockGZip.MAX_BLOCK_SIZE : 0;
+    }
+
+    /**
+     * Returns the threshold as set, negative if it's the default of the mode
+     */
+    long getFlushBytesSetting() {
+        return flushBytes;
+    }
+
+    /**
+     * Flushes pending bytes every <code>millis</code> milliseconds on a background ticker. 0 disables the ticker.
+     */
+    public synchronized void setFlushInterval(long millis) {
+        flushInterval = Math.max(0, millis);
+        if (isAttached) {
+            schedule();
+        }
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Messages at or above the severity of this level are flushed immediately, regardless of other settings.
+     * Note that {@link Level#OFF} is the most severe level.
+     */
+    public void setFlushLevel(Level level) {
+        if (level != null) {
+            flushLevel = level;
+        }
+    }
+
+    public Level getFlushLevel() {
+        return flushLevel;
+    }
+
+    private void schedule() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+        if (flushInterval > 0) {
+            tick = ticker.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void setExceptionHandler(ExceptionHandler handler) {
+        if (handler != null) {
+            this.handler = handler;
         }
     }
 
@@ -116,38 +263,253 @@ public class FileAppender {
         return rollSize;
     }
 
+    public RollInterval getRollInterval() {
+        return rollInterval;
+    }
+
+    /**
+     * Rolls on the first write past every hour or day boundary (in the system's time zone),
+     * in addition to the roll size. <tt>null</tt> rolls on size only.
+     * Has no effect while a custom {@link #setTriggeringPolicy triggering policy} is set.
+     */
+    public synchronized void setRollInterval(RollInterval interval) {
+        rollInterval = interval;
+        updatePolicy();
+    }
+
+    public TriggeringPolicy getTriggeringPolicy() {
+        return customPolicy;
+    }
+
+    /**
+     * Replaces the roll size and interval with a custom policy. <tt>null</tt> restores them.
+     * Rolling still has to be {@link #setRolling enabled}.
+     */
+    public synchronized void setTriggeringPolicy(TriggeringPolicy policy) {
+        customPolicy = policy;
+        updatePolicy();
+    }
+
+    private void updatePolicy() {
+        if (customPolicy != null) {
+            policy = customPolicy;
+        } else if (rollInterval != null) {
+            policy = TriggeringPolicy.anyOf(sizePolicy, TriggeringPolicy.every(rollInterval, ZoneId.systemDefault()));
+        } else {
+            policy = sizePolicy;
+        }
+        policy.started(fileStarted);
+    }
+
+    /**
+     * Renames the active file to an archive name and continues writing to a fresh one.
+     * This is O(1) in the size of the file and it's the only part done under the lock.
+     * If compression is enabled, the renamed file is compressed in the background.
+     * Archives exceeding the retention limits are deleted afterwards, also in the background.
+     * If the archiver's queue is full, the rolled file is left uncompressed and the archive exception handler is told.
+     * See {@link #awaitArchives}
+     */
     public synchronized void roll() throws IOException {
+        Path rolled = nextArchiveName();
+
+        // Mapped files must be truncated to their real length before they're renamed
+        sink.close();
+        try {
+            moveAtomically(outputPath, rolled);
+            Path index = BlockGZip.indexPath(outputPath);
+            if (Files.exists(index)) {
+                moveAtomically(index, BlockGZip.indexPath(rolled));
+            }
+        } finally {
+            // Normally empty, unless another process has already recreated the file
+            openSink();
+        }
+        archive(rolled);
+    }
+
+    /**
+     * Archive names carry the time of the roll in milliseconds.
+     * A sequence number is added in the unlikely case that the name is already taken.
+     */
+    private Path nextArchiveName() {
         String timeFormat = formatter.format(Instant.now());
-        String gZipName = timeFormat + outputPath.getFileName() + ".zip";
+        String fileName = outputPath.getFileName().toString();
+        Path rolled = resolveSibling(timeFormat + fileName);
+        for (int seq = 1; Files.exists(rolled) || Files.exists(compressedPath(rolled)); seq++) {
+            rolled = resolveSibling(timeFormat + seq + '_' + fileName);
+        }
+        return rolled;
+    }
+
+    private Path compressedPath(Path rolled) {
+        return resolveSibling(rolled.getFileName() + codec.getExtension());
+    }
+
+    private void archive(Path rolled) {
+        boolean compress = compressArchives && mode != FileMode.GZIP;
+        ArchiveCodec codec = this.codec;
+        int parallelism = archiveParallelism;
+        Path compressed = compressedPath(rolled);
+        ArchivePruner pruner = newPruner(compress);
+        if (!compress && pruner == null) {
+            return;
+        }
+        archives.removeIf(Future::isDone);
+        archives.add(Archiver.submit("archiving of " + rolled, () -> {
+            if (compress) {
+                compress(codec, parallelism, rolled, compressed);
+                Files.delete(rolled);
+            }
+            if (pruner != null) {
+                pruner.prune();
+            }
+        }, archiveHandler));
+    }
+
+    private ArchivePruner newPruner(boolean compressed) {
+        if (maxArchives == 0 && maxArchiveAge == 0 && maxArchiveBytes == 0) {
+            return null;
+        }
+        Path directory = outputPath.toAbsolutePath().getParent();
+        String[] suffixes = compressed ? ARCHIVE_EXTENSIONS : new String[]{""};
+        if (compressed && !Arrays.asList(suffixes).contains(codec.getExtension())) {
+            suffixes = Arrays.copyOf(suffixes, suffixes.length + 1);
+            suffixes[suffixes.length - 1] = codec.getExtension();
+        }
+        return new ArchivePruner(directory, outputPath.getFileName().toString(), suffixes,
+                maxArchives, maxArchiveAge, maxArchiveBytes);
+    }
+
+    private Path resolveSibling(String fileName) {
         Path parent = outputPath.getParent();
-        Path gZip = parent == null ? Paths.get(gZipName) : parent.resolve(gZipName);
-        compressToGZip(outputPath, gZip);
-        resetOutputFile();
-        cursor.set(0);
+        return parent == null ? Paths.get(fileName) : parent.resolve(fileName);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public boolean isCompressingArchives() {
+        return compressArchives;
+    }
+
+    /**
+     * Whether rolled files are compressed in the background. If disabled, rolled files are only renamed.
+     * Enabled by default.
+     */
+    public void setCompressArchives(boolean enabled) {
+        compressArchives = enabled;
+    }
+
+    public int getMaxArchives() {
+        return maxArchives;
     }
 
     /**
-     * This method is responsible for compressing files into GZIPs.
-     * There's no exception associated with an already existing file that matches a newly compressed zip,
-     * the file will be overwritten.
+     * Keeps at most this many archives of the log file, oldest are deleted in the background after a roll.
+     * 0 keeps all of them.
      */
-    private static void compressToGZip(Path pathToCompress, Path gZip) throws IOException {
-        InputStream logStream = newFileStreamForReading(pathToCompress);
-        GZIPOutputStream gZipOut = new GZIPOutputStream(newFileStreamForWriting(gZip));
+    public void setMaxArchives(int count) {
+        maxArchives = Math.max(0, count);
+    }
+
+    public long getMaxArchiveAge() {
+        return maxArchiveAge;
+    }
+
+    /**
+     * Deletes archives last modified more than <code>millis</code> milliseconds ago. 0 disables the limit.
+     */
+    public void setMaxArchiveAge(long millis) {
+        maxArchiveAge = Math.max(0, millis);
+    }
+
+    public long getMaxArchiveBytes() {
+        return maxArchiveBytes;
+    }
+
+    /**
+     * Deletes the oldest archives once all archives together take more than <code>bytes</code>.
+     * 0 disables the limit.
+     */
+    public void setMaxArchiveBytes(long bytes) {
+        maxArchiveBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * Waits until the rolled files of this appender have been compressed and pruned
+     *
+     * @return <tt>false</tt> if the timeout elapsed first
+     */
+    public boolean awaitArchives(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Future<?> archive;
+        while ((archive = archives.peek()) != null) {
+            try {
+                archive.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException | CancellationException ignored) {
+                // Reported through the archive exception handler
+            } catch (TimeoutException e) {
+                return false;
+            }
+            archives.remove(archive);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the handler of exceptions that occur while compressing rolled files in the background
+     */
+    public void setArchiveExceptionHandler(ExceptionHandler handler) {
+        if (handler != null) {
+            this.archiveHandler = handler;
+        }
+    }
+
+    public ArchiveCodec getArchiveCodec() {
+        return codec;
+    }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int bytesRead;
-        while ((bytesRead = logStream.read(buffer)) > 0) {
-            gZipOut.write(buffer, 0, bytesRead);
+    /**
+     * Sets the codec rolled files are compressed with, gzip at the default level by default.
+     * The archive is named after the rolled file with the codec's extension.
+     */
+    public void setArchiveCodec(ArchiveCodec codec) {
+        if (codec != null) {
+            this.codec = codec;
         }
-        logStream.close();
-        gZipOut.close();
     }
 
-    private void resetOutputFile() throws IOException {
-        RandomAccessFile file = new RandomAccessFile(outputPath.toFile(), "rw");
-        file.setLength(0);
-        file.close();
+    public int getArchiveParallelism() {
+        return archiveParallelism;
+    }
+
+    /**
+     * Sets the number of threads compressing a single rolled file, 1 by default.
+     * Large files are split into chunks compressed concurrently on a shared pool with one thread per core.
+     * The output is an ordinary archive, but not every codec supports it.
+     */
+    public void setArchiveParallelism(int threads) {
+        archiveParallelism = Math.max(1, threads);
+    }
+
+    /**
+     * This method is responsible for compressing rolled files with the archive codec.
+     * Archive names are unique, so the archive is a new file.
+     */
+    private static void compress(ArchiveCodec codec, int parallelism, Path pathToCompress, Path archive)
+            throws IOException {
+        try (InputStream logStream = newFileStreamForReading(pathToCompress);
+             OutputStream archiveOut = new BufferedOutputStream(newFileStreamForWriting(archive), BUFFER_SIZE)) {
+            codec.compress(logStream, archiveOut, parallelism);
+        }
     }
 
     /**
@@ -160,15 +522,93 @@ public class FileAppender {
     public synchronized void attach(Path path) throws IOException {
         detach();
         outputPath = path;
-        refreshCursor();
-        out = newFileStreamForWriting(outputPath);
+        openSink();
         isAttached = true;
+        schedule();
     }
 
+    /**
+     * Reopens the last attached file, e.g. after a failed write detached the appender.
+     * The open file is flushed and closed first.
+     */
     public synchronized void reattach() throws IOException {
-        refreshCursor();
-        out = newFileStreamForWriting(outputPath);
+        detach();
+        FileSink stale = sink;
+        if (stale != null) {
+            // Left open by a failed write
+            sink = null;
+            try {
+                stale.close();
+            } catch (IOException ignored) {
+            }
+        }
+        openSink();
         isAttached = true;
+        schedule();
+    }
+
+    private void openSink() throws IOException {
+        switch (mode) {
+            case MAPPED:
+                sink = new MappedSink(outputPath, regionSize);
+                break;
+            case GZIP:
+                sink = new BlockGZipSink(outputPath);
+                break;
+            default:
+                sink = new ChannelSink(outputPath);
+        }
+        // Appended records start a new segment, so the file is readable even if the previous one was torn
+        binaryEncoder.reset();
+        cursor.set(sink.length());
+        fileStarted = cursor.get() > 0 ? Files.getLastModifiedTime(outputPath).toMillis() : System.currentTimeMillis();
+        policy.started(fileStarted);
+    }
+
+    public FileMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the way bytes are written to the file. If attached, the file is reopened in the new mode.
+     */
+    public synchronized void setMode(FileMode mode) throws IOException {
+        if (mode == null || mode == this.mode) {
+            return;
+        }
+        this.mode = mode;
+        if (isAttached) {
+            sink.close();
+            openSink();
+        }
+    }
+
+    public FileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets what is written to the file, formatted text by default. Should be set before attaching,
+     * a file mixing both formats can't be read back as either of them.
+     */
+    public synchronized void setFormat(FileFormat format) {
+        if (format == null || format == this.format) {
+            return;
+        }
+        this.format = format;
+        binaryEncoder.reset();
+    }
+
+    public int getMappedRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * Sets the size of the region mapped at a time in {@link FileMode#MAPPED} mode.
+     * Takes effect when the file is opened next.
+     */
+    public void setMappedRegionSize(int bytes) {
+        regionSize = Math.max(bytes, MIN_ROLL_SIZE);
     }
 
     /**
@@ -178,13 +618,23 @@ public class FileAppender {
         if (!isAttached) {
             return;
         }
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
         isAttached = false;
-        out.close();
-        out = null;
+        try {
+            sink.close();
+        } finally {
+            sink = null;
+        }
     }
 
     @Override
     protected void finalize() throws Throwable {
-        out.close();
+        FileSink sink = this.sink;
+        if (sink != null) {
+            sink.close();
+        }
     }
 }
@@ -0,0 +1,31 @@
+package no4j.core;
+
+/**
+ * What {@link FileAppender} writes to the log file
+ */
+public enum FileFormat {
+    /**
+     * Formatted lines, the same as written to the console
+     */
+    TEXT,
+    /**
+     * One JSON object per line, see {@link JsonLayout}
+     */
+    JSON,
+    /**
+     * Compact checksummed records, see {@link BinaryLogReader}
+     */
+    BINARY;
+
+    /**
+     * Returns a format corresponding to its name (case-insensitive), if not found null is returned
+     */
+    public static FileFormat byName(String name) {
+        for (FileFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
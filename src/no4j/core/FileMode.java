@@ -0,0 +1,36 @@
+package no4j.core;
+
+/**
+ * How {@link FileAppender} writes to the log file
+ */
+public enum FileMode {
+    /**
+     * Writes are coalesced in a buffer and committed to a file channel according to the flush policy
+     */
+    CHANNEL,
+    /**
+     * Writes are copied into a memory-mapped region of the file, write-back is left to the operating system.
+     * The file is extended one region at a time and truncated to its real length when released.
+     * Mappings are released explicitly before truncating or renaming the file. On JVMs where that's impossible
+     * this mode can't be used on Windows, which refuses to truncate or rename mapped files.
+     */
+    MAPPED,
+    /**
+     * Writes are compressed on the fly into independently decompressible gzip members, see {@link BlockGZip}.
+     * Every flush ends a member, so by default writes are only flushed once a block is full.
+     * Rolled files are already compressed and are only renamed.
+     */
+    GZIP;
+
+    /**
+     * Returns a mode corresponding to its name (case-insensitive), if not found null is returned
+     */
+    public static FileMode byName(String name) {
+        for (FileMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
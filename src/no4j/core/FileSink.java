@@ -0,0 +1,34 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes bytes to an open log file. Used by {@link FileAppender} which provides synchronization.
+ */
+interface FileSink {
+    /**
+     * Writes the remaining bytes, the buffer is consumed
+     */
+    void write(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Returns the number of bytes written but not yet committed to the file
+     */
+    int pending();
+
+    /**
+     * Returns the length of the file, including pending bytes
+     */
+    long length() throws IOException;
+
+    /**
+     * Commits pending bytes to the file
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes and releases the file. The file's length must equal the number of bytes written once this returns.
+     */
+    void close() throws IOException;
+}
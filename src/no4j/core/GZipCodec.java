@@ -0,0 +1,201 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a single gzip member. Deflaters are kept between archives instead of allocating
+ * their native state every time.
+ * <p>
+ * With a parallelism above 1 the input is split into chunks deflated concurrently on a shared pool,
+ * the way pigz does it: every chunk is primed with the last 32 KB of the previous one as its dictionary
+ * and ends with a sync flush, so the deflated chunks concatenate into one ordinary deflate stream.
+ * The ratio stays close to serial compression and any gzip tool can read the output.
+ * </p>
+ */
+final class GZipCodec implements ArchiveCodec {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    // Empty final block with fixed Huffman codes, ends a stream of sync flushed chunks
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    private static volatile ForkJoinPool pool;
+
+    private final int level;
+    private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+
+    GZipCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".gz";
+    }
+
+    @Override
+    public void compress(InputStream in, OutputStream out) throws IOException {
+        compress(in, out, 1);
+    }
+
+    @Override
+    public void compress(InputStream in, OutputStream out, int parallelism) throws IOException {
+        out.write(HEADER);
+        CRC32 crc = new CRC32();
+        long length = parallelism > 1
+                ? deflateInParallel(in, out, crc, parallelism)
+                : deflate(in, out, crc);
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, (int) length);
+    }
+
+    private long deflate(InputStream in, OutputStream out, CRC32 crc) throws IOException {
+        Deflater deflater = acquire();
+        try {
+            long length = 0;
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+                deflated.write(buffer, 0, read);
+                length += read;
+            }
+            deflated.finish();
+            return length;
+        } finally {
+            release(deflater);
+        }
+    }
+
+    /**
+     * Reads chunks and writes them deflated in order, while up to <code>parallelism</code> chunks are deflated
+     */
+    private long deflateInParallel(InputStream in, OutputStream out, CRC32 crc, int parallelism) throws IOException {
+        ForkJoinPool pool = getPool();
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(parallelism);
+        long length = 0;
+        byte[] previous = null;
+        try {
+            byte[] chunk;
+            while ((chunk = readChunk(in)) != null) {
+                crc.update(chunk);
+                length += chunk.length;
+                byte[] dictionary = previous;
+                byte[] input = chunk;
+                pending.add(pool.submit(() -> deflateChunk(input, dictionary)));
+                previous = chunk;
+                if (pending.size() >= parallelism) {
+                    out.write(await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.write(await(pending.poll()));
+            }
+            out.write(FINAL_BLOCK);
+            return length;
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private byte[] deflateChunk(byte[] chunk, byte[] previous) {
+        Deflater deflater = acquire();
+        try {
+            if (previous != null) {
+                deflater.setDictionary(previous, previous.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(chunk);
+            byte[] output = new byte[chunk.length / 2 + 1024];
+            int size = 0, deflated;
+            do {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                deflated = deflater.deflate(output, size, output.length - size, Deflater.SYNC_FLUSH);
+                size += deflated;
+            } while (size == output.length);
+            return Arrays.copyOf(output, size);
+        } finally {
+            release(deflater);
+        }
+    }
+
+    /**
+     * Returns the next chunk, only the last one may be shorter, or null at the end of input
+     */
+    private static byte[] readChunk(InputStream in) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length = 0, read;
+        while (length < chunk.length && (read = in.read(chunk, length, chunk.length - length)) > 0) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        return length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Deflater acquire() {
+        Deflater deflater = idle.poll();
+        return deflater == null ? new Deflater(level, true) : deflater;
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        idle.offer(deflater);
+    }
+
+    private static ForkJoinPool getPool() {
+        if (pool == null) {
+            synchronized (GZipCodec.class) {
+                if (pool == null) {
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), forkJoinPool -> {
+                        ForkJoinWorkerThread thread =
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                        thread.setName("no4j-compressor-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    @Override
+    public String toString() {
+        return "gzip:" + level;
+    }
+}
@@ -0,0 +1,163 @@
+package no4j.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs an appender on its own worker thread behind a bounded queue, so a slow sink doesn't stall logging threads
+ * or the other outputs of the logger. Logging never waits: when the queue is full the message is dropped.
+ * <p>
+ * Every call to the appender is timed. A call taking longer than the latency budget (or one still running
+ * past it) trips the circuit breaker, messages are then dropped without being queued for the cooldown period.
+ * Afterwards messages are let through again, the breaker trips anew if the appender is still slow.
+ * </p>
+ */
+public class IsolatedAppender implements Appender {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_COOLDOWN_MILLIS = 1000;
+
+    private final Appender appender;
+    private final ArrayBlockingQueue<LogMessage> queue;
+    private final long latencyBudgetNanos;
+    private final long cooldownNanos;
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong trips = new AtomicLong(0);
+    private volatile long delivered = 0;
+    /**
+     * Start of the call in progress, 0 while the worker is idle
+     */
+    private volatile long callStarted = 0;
+    /**
+     * Messages are dropped until this time while the breaker is open
+     */
+    private volatile long closesAt = 0;
+    private volatile boolean tripped;
+    private final Worker worker;
+
+    /**
+     * Creates the appender and starts its worker thread
+     *
+     * @param capacity            maximum number of messages waiting to be delivered
+     * @param latencyBudgetMillis longest acceptable duration of a single call to the appender
+     * @param cooldownMillis      time for which messages are dropped after the breaker tripped
+     */
+    public IsolatedAppender(Appender appender, int capacity, long latencyBudgetMillis, long cooldownMillis) {
+        this.appender = appender;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.latencyBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyBudgetMillis));
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cooldownMillis));
+        this.worker = new Worker("no4j-appender-" + appender.getClass().getSimpleName(), this::work,
+                ShutdownHooks.DELIVER, () -> awaitDelivered(ShutdownHooks.EXIT_TIMEOUT_MILLIS));
+        this.worker.start();
+    }
+
+    @Override
+    public void log(LogMessage message) {
+        if (worker.runsInline()) {
+            deliver(message);
+            return;
+        }
+        long now = System.nanoTime();
+        long started = callStarted;
+        if (started != 0 && now - started > latencyBudgetNanos) {
+            // The appender is stuck in a call
+            trip(now);
+        }
+        if (tripped && now - closesAt < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        accepted.incrementAndGet();
+        if (!queue.offer(message.isReusable() ? message.copy() : message)) {
+            accepted.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void work() {
+        while (worker.isRunning() || !queue.isEmpty()) {
+            LogMessage message;
+            try {
+                message = queue.poll(Worker.PARK_NANOS, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (message == null) {
+                continue;
+            }
+            long started = System.nanoTime();
+            callStarted = started;
+            deliver(message);
+            long finished = System.nanoTime();
+            callStarted = 0;
+            if (finished - started > latencyBudgetNanos) {
+                trip(finished);
+            } else if (tripped && finished - closesAt >= 0) {
+                tripped = false;
+            }
+            delivered++;
+        }
+    }
+
+    private void trip(long now) {
+        if (tripped && now - closesAt < 0) {
+            return;
+        }
+        closesAt = now + cooldownNanos;
+        tripped = true;
+        trips.incrementAndGet();
+    }
+
+    private void deliver(LogMessage message) {
+        try {
+            appender.log(message);
+        } catch (RuntimeException e) {
+            Logger.getInternalLogger().error("Isolated appender failed: " + e);
+        }
+    }
+
+    /**
+     * Whether the circuit breaker is open or the appender hasn't proved itself since the cooldown ended
+     */
+    public boolean isTripped() {
+        return tripped;
+    }
+
+    /**
+     * Returns the number of times the circuit breaker tripped
+     */
+    public long getTripCount() {
+        return trips.get();
+    }
+
+    /**
+     * Returns the number of messages discarded because the queue was full or the breaker was open
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public Appender getAppender() {
+        return appender;
+    }
+
+    /**
+     * Waits until every message accepted so far has been delivered
+     *
+     * @return <tt>true</tt> if the messages were delivered within the timeout
+     */
+    public boolean awaitDelivered(long timeoutMillis) {
+        long target = accepted.get();
+        return worker.await(() -> delivered >= target, timeoutMillis);
+    }
+
+    /**
+     * Delivers pending messages and terminates the worker thread.
+     * Messages logged afterwards are delivered synchronously.
+     */
+    public void shutdown(long timeoutMillis) {
+        worker.shutdown(timeoutMillis);
+    }
+}
@@ -0,0 +1,182 @@
+package no4j.core;
+
+import java.util.Map;
+
+/**
+ * Writes messages as JSON Lines, one object per line:
+ * <pre>
+ * {"time":"...","level":"INFO","method":"...","message":"...","stack":["..."],"context field":"..."}
+ * </pre>
+ * <code>time</code> is ISO-8601 in UTC with microseconds, unless the message was created without a raw instant
+ * and carries its own rendered time.
+ * <code>stack</code> is only present for messages with a stack trace. Fields are appended straight
+ * to the output builder, characters are escaped with a lookup table and text which needs no escaping
+ * is appended in bulk.
+ */
+final class JsonLayout {
+    /**
+     * Character written after a backslash, 'u' for a unicode escape, 0 if the character is written as is
+     */
+    private static final char[] ESCAPES = new char[128];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final CachedFormatter TIMESTAMPS = new CachedFormatter(LoggerConfig.ISO_8601_FORMATTER);
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['/'] = '/';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+    }
+
+    private JsonLayout() {
+    }
+
+    /**
+     * Appends the message as a single line, trimmed according to the config and followed by its context fields
+     */
+    static void format(LogMessage msg, LoggerConfig config, StringBuilder out) {
+        format(msg, config.maxMessageLength, config.maxStackTraceDepth, config.jsonFields, out);
+        out.append('\n');
+    }
+
+    /**
+     * Appends the message as a JSON object
+     *
+     * @param fields pre-rendered context fields, see {@link #renderFields}
+     */
+    static void format(LogMessage msg, int maxMessageLength, int maxStackTraceDepth, String fields,
+                       StringBuilder out) {
+        out.append("{\"time\":");
+        if (msg.time != null && !msg.hasInstant()) {
+            appendString(out, msg.time);
+        } else {
+            out.append('"');
+            TIMESTAMPS.formatTo(msg.epochSecond, msg.nano, out);
+            out.append('"');
+        }
+        out.append(",\"level\":");
+        appendString(out, msg.level.name);
+        out.append(",\"method\":");
+        appendString(out, msg.method);
+        out.append(",\"message\":");
+        appendMessage(out, msg, maxMessageLength);
+
+        StackTraceElement[] stack = msg.stack;
+        if (stack != null) {
+            out.append(",\"stack\":[");
+            int depth = Math.min(stack.length, maxStackTraceDepth);
+            for (int i = 0; i < depth; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendFrame(out, stack[i]);
+            }
+            out.append(']');
+        }
+        out.append(fields);
+        out.append('}');
+    }
+
+    /**
+     * Renders context fields once, so that they're only copied into every message
+     */
+    static String renderFields(Map<String, String> fields) {
+        StringBuilder rendered = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            rendered.append(',');
+            appendString(rendered, field.getKey());
+            rendered.append(':');
+            appendString(rendered, field.getValue());
+        }
+        return rendered.toString();
+    }
+
+    /**
+     * Formats the message in place and escapes it only if needed, which is rare
+     */
+    private static void appendMessage(StringBuilder out, LogMessage msg, int maxMessageLength) {
+        if (msg.message == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = out.length();
+        MessageFormatter.format(out, msg.message, msg.params);
+        if (out.length() - start > maxMessageLength) {
+            int cut = start + maxMessageLength;
+            if (cut > start && Character.isHighSurrogate(out.charAt(cut - 1))) {
+                // Don't leave half of a surrogate pair, it isn't valid in JSON
+                cut--;
+            }
+            out.setLength(cut);
+        }
+        int end = out.length();
+        for (int i = start; i < end; i++) {
+            char c = out.charAt(i);
+            if (c < 128 && ESCAPES[c] != 0) {
+                String unescaped = out.substring(i, end);
+                out.setLength(i);
+                appendEscaped(out, unescaped);
+                break;
+            }
+        }
+        out.append('"');
+    }
+
+    private static void appendFrame(StringBuilder out, StackTraceElement frame) {
+        out.append('"');
+        appendEscaped(out, frame.getClassName());
+        out.append('.');
+        appendEscaped(out, frame.getMethodName());
+        String fileName = frame.getFileName();
+        if (frame.isNativeMethod()) {
+            out.append("(Native Method)");
+        } else if (fileName == null) {
+            out.append("(Unknown Source)");
+        } else {
+            out.append('(');
+            appendEscaped(out, fileName);
+            if (frame.getLineNumber() >= 0) {
+                out.append(':').append(frame.getLineNumber());
+            }
+            out.append(')');
+        }
+        out.append('"');
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        appendEscaped(out, value);
+        out.append('"');
+    }
+
+    static void appendEscaped(StringBuilder out, CharSequence text) {
+        int length = text.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || ESCAPES[c] == 0) {
+                continue;
+            }
+            out.append(text, run, i);
+            run = i + 1;
+            char escape = ESCAPES[c];
+            out.append('\\').append(escape);
+            if (escape == 'u') {
+                out.append("00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(text, run, length);
+    }
+}
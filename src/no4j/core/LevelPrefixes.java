@@ -0,0 +1,109 @@
+package no4j.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ready-to-copy prefixes of the default layout for every standard level: the level's color,
+ * <code>[LEVEL]</code> and its padding, and the beginning of a colored stack frame line.
+ * Built once per change of the console's {@link Console#palette palette} or the level pad length,
+ * so formatting a message only copies arrays. Instances are immutable and replaced as a whole.
+ */
+final class LevelPrefixes {
+    static final int CUSTOM_INDEX = 6;
+    static final char[] RESET = Color.RESET.sgr.toCharArray();
+    static final char[] AT = "at ".toCharArray();
+    /**
+     * Most custom levels whose entries are cached, entries of further levels are built on every call
+     */
+    static final int MAX_CUSTOM_ENTRIES = 64;
+
+    private static final Level[] LEVELS = {
+            Level.UNREACHABLE, Level.FATAL, Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG
+    };
+
+    final Color[] palette;
+    final int padLength;
+    private final Entry[] entries = new Entry[LEVELS.length];
+    private final ConcurrentHashMap<Level, Entry> customEntries = new ConcurrentHashMap<>();
+
+    private LevelPrefixes(Color[] palette, int padLength) {
+        this.palette = palette;
+        this.padLength = padLength;
+        for (int i = 0; i < LEVELS.length; i++) {
+            entries[i] = new Entry(LEVELS[i], palette[i], padLength);
+        }
+    }
+
+    static LevelPrefixes of(Color[] palette, int padLength) {
+        return new LevelPrefixes(palette, padLength);
+    }
+
+    /**
+     * Index of the level's color in a palette, custom levels share the last one
+     */
+    static int index(Level level) {
+        switch (level.value) {
+            case Level.UNREACHABLE_VALUE:
+                return 0;
+            case Level.FATAL_VALUE:
+                return 1;
+            case Level.ERROR_VALUE:
+                return 2;
+            case Level.WARN_VALUE:
+                return 3;
+            case Level.INFO_VALUE:
+                return 4;
+            case Level.DEBUG_VALUE:
+                return 5;
+            default:
+                return CUSTOM_INDEX;
+        }
+    }
+
+    /**
+     * Returns the prefixes of the level. Entries of custom levels are built on first use.
+     */
+    Entry entry(Level level) {
+        int index = index(level);
+        if (index < entries.length && entries[index].level == level) {
+            return entries[index];
+        }
+        Entry entry = customEntries.get(level);
+        if (entry != null) {
+            return entry;
+        }
+        entry = new Entry(level, palette[index], padLength);
+        if (customEntries.size() < MAX_CUSTOM_ENTRIES) {
+            customEntries.putIfAbsent(level, entry);
+        }
+        return entry;
+    }
+
+    static final class Entry {
+        final Level level;
+        final Color color;
+        /**
+         * <code>[LEVEL] </code> followed by padding
+         */
+        final char[] plain;
+        /**
+         * The same, preceded by the color
+         */
+        final char[] colored;
+        /**
+         * Color followed by <code>at </code>
+         */
+        final char[] coloredAt;
+
+        private Entry(Level level, Color color, int padLength) {
+            this.level = level;
+            this.color = color;
+            StringBuilder prefix = new StringBuilder(padLength + 16);
+            prefix.append('[').append(level.name).append("] ");
+            PatternLayout.pad(prefix, padLength - 1 - level.name.length());
+            this.plain = prefix.toString().toCharArray();
+            this.colored = (color.sgr + prefix).toCharArray();
+            this.coloredAt = (color.sgr + "at ").toCharArray();
+        }
+    }
+}
@@ -1,13 +1,58 @@
 package no4j.core;
 
 import java.io.Serializable;
+import java.time.Instant;
 
+/**
+ * A logged event. Messages of loggers with {@link LoggerConfig#setReuseMessages reusable messages}
+ * are only valid until the sink they're handed to returns, sinks which keep them have to {@link #copy} them.
+ */
 public class LogMessage implements Serializable {
+    private static final ThreadLocal<LogMessage> reusable = ThreadLocal.withInitial(LogMessage::reusable);
+
+    /**
+     * Time rendered by the formatter of the logger, filled before the message is handed to {@link Appender}s.
+     * Built-in sinks render {@link #epochSecond} and {@link #nano} themselves and only use this field
+     * for messages which weren't created by a logger. Prefer {@link #getTime}, which renders on demand.
+     */
     public String time;
     public Level level;
     public String message;
     public String method;
     public StackTraceElement[] stack;
+    /**
+     * Arguments of a parameterized message, <tt>null</tt> if the message is plain.
+     * In that case {@link #message} is the pattern, use {@link #getFormattedMessage()} to obtain the final text.
+     */
+    public Object[] params;
+    /**
+     * Time of the event, as in {@link java.time.Instant}
+     */
+    public long epochSecond;
+    public int nano;
+    /**
+     * Name of the thread which logged the message
+     */
+    public String thread;
+    /**
+     * Name of the logger, <tt>null</tt> for anonymous loggers
+     */
+    public String logger;
+    /**
+     * Id of the frame which made the log call, 0 if it's unknown
+     */
+    public int callSite;
+    /**
+     * Formatter of the logger which created the message, renders {@link #getTime}
+     */
+    transient CachedFormatter timestamps;
+    /**
+     * Cache of {@link #getTime}, kept apart from {@link #time} so that rendering doesn't change the output of sinks
+     */
+    private transient String renderedTime;
+
+    private transient boolean isReusable;
+    private transient boolean inUse;
 
     public LogMessage(String time, Level level, String message, String method) {
         this.time = time;
@@ -24,50 +69,154 @@ public class LogMessage implements Serializable {
         this.stack = stack;
     }
 
+    /**
+     * Returns this thread's reusable message. If it's already in use (logging from within a sink)
+     * a new message is returned instead. Every acquired message must be given back with {@link #release}
+     */
+    static LogMessage acquire() {
+        LogMessage message = reusable.get();
+        if (message.inUse) {
+            return new LogMessage(null, null, null, null);
+        }
+        message.inUse = true;
+        return message;
+    }
+
+    /**
+     * Returns a new message flagged as reusable, for sinks which pool their own messages
+     */
+    static LogMessage reusable() {
+        LogMessage message = new LogMessage(null, null, null, null);
+        message.isReusable = true;
+        return message;
+    }
+
+    /**
+     * Drops references held by a reusable message, so that they can be collected
+     */
+    void release() {
+        if (!isReusable) {
+            return;
+        }
+        message = null;
+        params = null;
+        stack = null;
+        inUse = false;
+    }
+
+    /**
+     * Whether this instance is reused for subsequent messages once its sink returns
+     */
+    public boolean isReusable() {
+        return isReusable;
+    }
+
+    /**
+     * Returns an independent copy of this message, which can be retained
+     */
+    public LogMessage copy() {
+        LogMessage copy = new LogMessage(null, null, null, null);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Clears the time of a previous event and sets the formatter of the logger creating this one
+     */
+    void stamp(CachedFormatter timestamps) {
+        this.time = null;
+        this.renderedTime = null;
+        this.timestamps = timestamps;
+    }
+
+    void copyFrom(LogMessage other) {
+        time = other.time;
+        renderedTime = other.renderedTime;
+        level = other.level;
+        message = other.message;
+        method = other.method;
+        stack = other.stack;
+        params = other.params;
+        epochSecond = other.epochSecond;
+        nano = other.nano;
+        thread = other.thread;
+        logger = other.logger;
+        callSite = other.callSite;
+        timestamps = other.timestamps;
+    }
+
+    /**
+     * Returns the time rendered by the formatter of the logger which created the message, on first use
+     */
+    public String getTime() {
+        if (time != null || timestamps == null) {
+            return time;
+        }
+        if (renderedTime == null) {
+            renderedTime = timestamps.format(epochSecond, nano);
+        }
+        return renderedTime;
+    }
+
+    /**
+     * Whether the message was created by a logger, so that its raw instant is authoritative over {@link #time}
+     */
+    boolean hasInstant() {
+        return timestamps != null;
+    }
+
+    /**
+     * Appends {@link #time} of a message which wasn't created by a logger,
+     * otherwise the raw instant rendered by the given formatter
+     */
+    void appendTime(CachedFormatter formatter, StringBuilder out) {
+        if (time != null && !hasInstant()) {
+            out.append(time);
+        } else {
+            formatter.formatTo(epochSecond, nano, out);
+        }
+    }
+
+    public long getEpochMillis() {
+        return epochSecond * 1000 + nano / 1_000_000;
+    }
+
+    public Instant getInstant() {
+        return Instant.ofEpochSecond(epochSecond, nano);
+    }
+
+    /**
+     * Returns the frame which made the log call, <tt>null</tt> if it's unknown
+     */
+    public StackTraceElement getCallSite() {
+        return CallSites.get(callSite);
+    }
+
+    /**
+     * Returns the message with placeholders replaced by the arguments (if any)
+     */
+    public String getFormattedMessage() {
+        if (params == null) {
+            return message;
+        }
+        return MessageFormatter.format(message, params);
+    }
+
+    /**
+     * Returns the message as a JSON object, see {@link JsonLayout}
+     */
     public String toJson() {
-        return "{" +
-                "\"time\":\"" + jsonEncode(time) + '\"' +
-                ",\"level\":\"" + jsonEncode(level.name) + '\"' +
-                ",\"message\":\"" + jsonEncode(message) + '\"' +
-                ",\"method\":\"" + jsonEncode(method) + '\"' +
-                '}';
+        StringBuilder json = new StringBuilder(128);
+        JsonLayout.format(this, Integer.MAX_VALUE, Integer.MAX_VALUE, "", json);
+        return json.toString();
     }
 
     protected static String jsonEncode(String str) {
         if (str == null) {
             return null;
         }
-        StringBuilder escaped = new StringBuilder();
-        for (char c : str.toCharArray()) {
-            switch (c) {
-                case '"':
-                    escaped.append("\\\"");
-                    break;
-                case '\\':
-                    escaped.append("\\\\");
-                    break;
-                case '/':
-                    escaped.append("\\/");
-                    break;
-                case '\b':
-                    escaped.append("\\b");
-                    break;
-                case '\f':
-                    escaped.append("\\f");
-                    break;
-                case '\n':
-                    escaped.append("\\n");
-                    break;
-                case '\r':
-                    escaped.append("\\r");
-                    break;
-                case '\t':
-                    escaped.append("\\t");
-                    break;
-                default:
-                    escaped.append(c);
-            }
-        }
+        StringBuilder escaped = new StringBuilder(str.length() + 16);
+        JsonLayout.appendEscaped(escaped, str);
         return escaped.toString();
     }
 }
@@ -4,27 +4,31 @@ import no4j.extensions.LoggerBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * The central class used for logging
  */
 public class Logger {
-    private final String name;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
 
-    private static final int STACK_INDEX = 3;
+    private final String name;
 
     private static final Logger internalLogger = LoggerBuilder.warning("internal")
             .methodPadLength(64)
             .getLogger();
     private static final Logger globalLogger = new Logger("global");
 
+    private static final ClassValue<Logger> classLoggers = new ClassValue<Logger>() {
+        @Override
+        protected Logger computeValue(Class<?> type) {
+            return getLogger(type.getName());
+        }
+    };
+
     /**
      * <code>FileAppender</code> object. One per logger.
      */
@@ -37,17 +41,44 @@ public class Logger {
 
     /**
      * <code>Appender</code> objects. Many per logger.
+     * Copied on write, so messages are dispatched over a snapshot without locking.
      */
-    final List<Appender> appenders = new ArrayList<>();
+    volatile Appender[] appenders = new Appender[0];
 
     LoggerConfig config = LoggerConfig.create();
 
     ExceptionHandler handler = e -> Logger.getInternalLogger().exception(e);
 
     /**
-     * Logging level to apply for logging to occur (applies to printing and file output)
+     * Non-null when the logger is asynchronous. Formatting and I/O are then performed by the queue's drainer thread.
+     */
+    volatile AsyncQueue asyncQueue;
+
+    /**
+     * Prefixes of the default layout, see {@link #levelPrefixes}
+     */
+    private volatile LevelPrefixes prefixes = LevelPrefixes.of(console.palette, config.levelPadLength);
+
+    /**
+     * Rendered methods by call site id, see {@link #methodOf}
+     */
+    private volatile MethodNames methodNames = new MethodNames(false, true);
+
+    /**
+     * Logging level to apply for logging to occur (applies to printing and file output).
+     * This is the effective level, either {@link #level} or the level inherited from the nearest ancestor.
+     */
+    volatile Level loggingLevel = Level.OFF;
+
+    /**
+     * Level set for this logger, <tt>null</tt> if the level is inherited
+     */
+    volatile Level level;
+
+    /**
+     * The configuration this logger is registered in, <tt>null</tt> if it's not registered
      */
-    Level loggingLevel = Level.OFF;
+    volatile No4JConfiguration registry;
 
     Logger(String name) {
         this.name = name;
@@ -77,7 +108,12 @@ public class Logger {
 
     /**
      * Returns a valid logger as long as the name is not null.
-     * If logger with the given name is not found, a new logger is created, stored in the list of loggers, then returned.
+     * If logger with the given name is not found, a new logger is created, stored in the registry of loggers,
+     * then returned. Creation is atomic, concurrent callers always receive the same logger.
+     * <p>
+     * Names are hierarchical, segments are separated with dots. A logger without its own level
+     * uses the level of its nearest ancestor, e.g. <code>org.app.db</code> inherits from <code>org.app</code>.
+     * </p>
      *
      * @return logger with the given name or <tt>null</tt>
      */
@@ -86,17 +122,29 @@ public class Logger {
             return null;
         }
         No4JConfiguration configuration = No4JConfiguration.get();
-        List<Logger> loggers = configuration.loggers;
-        synchronized (loggers) {
-            for (Logger logger : loggers) {
-                if (logger.name.equals(name)) {
-                    return logger;
-                }
-            }
+        Logger logger = configuration.loggers.get(name);
+        if (logger != null) {
+            return logger;
         }
+        return configuration.register(name);
+    }
 
-        Logger logger = new Logger(name);
-        loggers.add(logger);
+    /**
+     * Returns the logger named after the fully qualified name of the class, see {@link #getLogger(String)}.
+     * The logger is cached per class.
+     *
+     * @return logger for the given class or <tt>null</tt>
+     */
+    public static Logger getLogger(Class<?> cls) {
+        if (cls == null) {
+            return null;
+        }
+        Logger logger = classLoggers.get(cls);
+        if (logger.registry != No4JConfiguration.get()) {
+            // Removed or reconfigured since it was cached
+            classLoggers.remove(cls);
+            logger = classLoggers.get(cls);
+        }
         return logger;
     }
 
@@ -115,7 +163,8 @@ public class Logger {
         Logger logger = getLogger(name);
         logger.getConsole().enableColor(true);
         LoggerConfig config = logger.getConfig();
-        if (config.formatter == LoggerConfig.FULL_DATE_FORMATTER) {
+        if (config.formatter == LoggerConfig.FULL_DATE_MILLIS_FORMATTER
+                || config.formatter == LoggerConfig.FULL_DATE_FORMATTER) {
             config.setFormatter(LoggerConfig.TIME_FORMATTER);
         }
         config.includeMethod(false);
@@ -125,16 +174,21 @@ public class Logger {
     }
 
     /**
-     * Removes a logger from the list of loggers.
+     * Removes a logger from the registry of loggers. Its descendants that inherited its level are updated.
+     * An asynchronous logger is drained and becomes synchronous, so that its queue thread doesn't outlive it.
      *
-     * @return <tt>true</tt> if the list contained the specified logger, otherwise <tt>false</tt>.
+     * @return <tt>true</tt> if the registry contained the specified logger, otherwise <tt>false</tt>.
      */
     public static boolean removeLogger(Logger logger) {
-        if (logger == null) {
+        if (logger == null || logger.name == null) {
             return false;
         }
         No4JConfiguration configuration = No4JConfiguration.get();
-        return configuration.loggers.remove(logger);
+        if (!configuration.unregister(logger)) {
+            return false;
+        }
+        logger.enableAsync(false);
+        return true;
     }
 
     public static int loggerCount() {
@@ -145,8 +199,18 @@ public class Logger {
         return name;
     }
 
+    /**
+     * Sets the level of this logger. Descendants without their own level inherit it.
+     * Setting <tt>null</tt> makes this logger inherit the level of its nearest ancestor.
+     */
     public void setLoggingLevel(Level level) {
-        loggingLevel = level;
+        No4JConfiguration registry = this.registry;
+        if (registry == null) {
+            this.level = level;
+            loggingLevel = level == null ? Level.OFF : level;
+            return;
+        }
+        registry.setLevel(this, level);
     }
 
     public Level getLogLevel() {
@@ -157,6 +221,37 @@ public class Logger {
         return config;
     }
 
+    /**
+     * Returns <tt>true</tt> if messages of the given level would be logged. Useful to guard expensive computations.
+     */
+    public boolean isEnabled(Level level) {
+        return level != null && level.value > Level.OFF_VALUE && level.value <= loggingLevel.value;
+    }
+
+    public boolean isUnreachableEnabled() {
+        return loggingLevel.value >= Level.UNREACHABLE_VALUE;
+    }
+
+    public boolean isFatalEnabled() {
+        return loggingLevel.value >= Level.FATAL_VALUE;
+    }
+
+    public boolean isErrorEnabled() {
+        return loggingLevel.value >= Level.ERROR_VALUE;
+    }
+
+    public boolean isWarnEnabled() {
+        return loggingLevel.value >= Level.WARN_VALUE;
+    }
+
+    public boolean isInfoEnabled() {
+        return loggingLevel.value >= Level.INFO_VALUE;
+    }
+
+    public boolean isDebugEnabled() {
+        return loggingLevel.value >= Level.DEBUG_VALUE;
+    }
+
     /**
      * Attempts to log only if the supplied condition is true
      */
@@ -174,32 +269,266 @@ public class Logger {
         logMessage(message, Level.UNREACHABLE);
     }
 
+    /**
+     * Logs a parameterized message, each <code>{}</code> placeholder is replaced with the next argument.
+     * Arguments are only rendered if the level is enabled and, for asynchronous loggers, on the background thread.
+     * The same applies to the parameterized methods of all other levels.
+     */
+    public void unreachable(String format, Object arg1) {
+        if (isEnabled(Level.UNREACHABLE)) {
+            logMessage(format, Level.UNREACHABLE, new Object[]{arg1});
+        }
+    }
+
+    public void unreachable(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.UNREACHABLE)) {
+            logMessage(format, Level.UNREACHABLE, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void unreachable(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.UNREACHABLE)) {
+            logMessage(format, Level.UNREACHABLE, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void unreachable(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.UNREACHABLE)) {
+            logMessage(format, Level.UNREACHABLE, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void unreachable(String format, Object... args) {
+        if (isEnabled(Level.UNREACHABLE)) {
+            logMessage(format, Level.UNREACHABLE, args);
+        }
+    }
+
+    /**
+     * Logs the supplied message, the supplier is only called if the level is enabled.
+     * Named apart from {@link #unreachable(String)} so that calls such as <code>unreachable(null)</code>
+     * stay unambiguous. The same applies to the lazy methods of all other levels.
+     */
+    public void unreachableLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.UNREACHABLE_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.UNREACHABLE);
+        }
+    }
+
     public void fatal(String message) {
         logMessage(message, Level.FATAL);
     }
 
+    public void fatal(String format, Object arg1) {
+        if (isEnabled(Level.FATAL)) {
+            logMessage(format, Level.FATAL, new Object[]{arg1});
+        }
+    }
+
+    public void fatal(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.FATAL)) {
+            logMessage(format, Level.FATAL, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void fatal(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.FATAL)) {
+            logMessage(format, Level.FATAL, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void fatal(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.FATAL)) {
+            logMessage(format, Level.FATAL, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void fatal(String format, Object... args) {
+        if (isEnabled(Level.FATAL)) {
+            logMessage(format, Level.FATAL, args);
+        }
+    }
+
+    public void fatalLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.FATAL_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.FATAL);
+        }
+    }
+
     public void error(String message) {
         logMessage(message, Level.ERROR);
     }
 
+    public void error(String format, Object arg1) {
+        if (isEnabled(Level.ERROR)) {
+            logMessage(format, Level.ERROR, new Object[]{arg1});
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            logMessage(format, Level.ERROR, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.ERROR)) {
+            logMessage(format, Level.ERROR, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.ERROR)) {
+            logMessage(format, Level.ERROR, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            logMessage(format, Level.ERROR, args);
+        }
+    }
+
+    public void errorLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.ERROR_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.ERROR);
+        }
+    }
+
     public void warn(String message) {
         logMessage(message, Level.WARN);
     }
 
+    public void warn(String format, Object arg1) {
+        if (isEnabled(Level.WARN)) {
+            logMessage(format, Level.WARN, new Object[]{arg1});
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            logMessage(format, Level.WARN, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.WARN)) {
+            logMessage(format, Level.WARN, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.WARN)) {
+            logMessage(format, Level.WARN, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            logMessage(format, Level.WARN, args);
+        }
+    }
+
+    public void warnLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.WARN_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.WARN);
+        }
+    }
+
     public void info(String message) {
         logMessage(message, Level.INFO);
     }
 
+    public void info(String format, Object arg1) {
+        if (isEnabled(Level.INFO)) {
+            logMessage(format, Level.INFO, new Object[]{arg1});
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            logMessage(format, Level.INFO, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.INFO)) {
+            logMessage(format, Level.INFO, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.INFO)) {
+            logMessage(format, Level.INFO, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            logMessage(format, Level.INFO, args);
+        }
+    }
+
+    /**
+     * Logs the value returned by the supplier, which is only invoked if the level is enabled.
+     * The same applies to the supplier methods of all other levels.
+     */
+    public void infoLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.INFO_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.INFO);
+        }
+    }
+
     public void debug(String message) {
         logMessage(message, Level.DEBUG);
     }
 
+    public void debug(String format, Object arg1) {
+        if (isEnabled(Level.DEBUG)) {
+            logMessage(format, Level.DEBUG, new Object[]{arg1});
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            logMessage(format, Level.DEBUG, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.DEBUG)) {
+            logMessage(format, Level.DEBUG, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Level.DEBUG)) {
+            logMessage(format, Level.DEBUG, new Object[]{arg1, arg2, arg3, arg4});
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (isEnabled(Level.DEBUG)) {
+            logMessage(format, Level.DEBUG, args);
+        }
+    }
+
+    public void debugLazy(Supplier<?> supplier) {
+        if (loggingLevel.value >= Level.DEBUG_VALUE) {
+            logMessage(String.valueOf(supplier.get()), Level.DEBUG);
+        }
+    }
+
     public void debug(Object object) {
-        logMessage(object.toString(), Level.DEBUG);
+        if (isEnabled(Level.DEBUG)) {
+            logMessage("{}", Level.DEBUG, new Object[]{object});
+        }
     }
 
     public <T> void debug(T[] array) {
-        logMessage(Arrays.toString(array), Level.DEBUG);
+        if (isEnabled(Level.DEBUG)) {
+            logMessage("{}", Level.DEBUG, new Object[]{array});
+        }
     }
 
     public void exception(Throwable throwable) {
@@ -213,12 +542,37 @@ public class Logger {
         if (this.loggingLevel.value < Level.ERROR_VALUE) {
             return;
         }
-        String time = config.formatter.format(Instant.now());
+        long now = EpochClock.epochNanos();
         StackTraceElement[] stack = throwable.getStackTrace();
         String firstMethod = stack.length > 0 ? stack[0].toString() : "";
 
-        LogMessage logMessage = new LogMessage(time, Level.ERROR, message, firstMethod, stack);
-        writeMessage(logMessage);
+        LogMessage logMessage = config.reuseMessages ? LogMessage.acquire() : new LogMessage(null, null, null, null);
+        logMessage.stamp(config.timestamps);
+        logMessage.level = Level.ERROR;
+        logMessage.message = message;
+        logMessage.method = firstMethod;
+        logMessage.stack = stack;
+        logMessage.params = null;
+        logMessage.epochSecond = Math.floorDiv(now, NANOS_PER_SECOND);
+        logMessage.nano = (int) Math.floorMod(now, NANOS_PER_SECOND);
+        logMessage.thread = Thread.currentThread().getName();
+        logMessage.logger = name;
+        logMessage.callSite = 0;
+        try {
+            dispatch(logMessage);
+        } finally {
+            logMessage.release();
+        }
+    }
+
+    /**
+     * Registers a class that wraps loggers. Its frames are skipped when resolving the method which made the log call,
+     * so that the reported method is the wrapper's caller.
+     */
+    public static void registerWrapper(Class<?> wrapper) {
+        if (wrapper != null) {
+            CallerResolver.ignore(wrapper);
+        }
     }
 
     public void setExceptionHandler(ExceptionHandler handler) {
@@ -228,136 +582,257 @@ public class Logger {
     }
 
     private void logMessage(String message, Level level) {
+        logMessage(message, level, null);
+    }
+
+    /**
+     * @param params arguments of a parameterized message, rendered when the message is formatted
+     */
+    private void logMessage(String message, Level level, Object[] params) {
         if (level == null || level.value <= Level.OFF_VALUE || this.loggingLevel.value < level.value) {
             return;
         }
-        Instant now = Instant.now();
+        long now = EpochClock.epochNanos();
         String method = "";
+        int callSite = 0;
         if (config.includeMethod) {
             // This is not guaranteed to work in which case method will be empty
-            StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-            if (STACK_INDEX < stack.length) {
-                method = stackElementToMethod(stack[STACK_INDEX]);
+            StackTraceElement caller = CallerResolver.resolve();
+            if (caller != null) {
+                callSite = CallSites.idOf(caller);
+                method = methodOf(callSite, caller);
             }
         }
-        if (message != null && message.length() > config.maxMessageLength) {
+        if (params == null && message != null && message.length() > config.maxMessageLength) {
             message = message.substring(0, config.maxMessageLength);
         }
-        String time = config.formatter.format(now);
-        LogMessage logMessage = new LogMessage(time, level, message, method);
-        writeMessage(logMessage);
+        LogMessage logMessage = config.reuseMessages ? LogMessage.acquire() : new LogMessage(null, null, null, null);
+        logMessage.stamp(config.timestamps);
+        logMessage.level = level;
+        logMessage.message = message;
+        logMessage.method = method;
+        logMessage.stack = null;
+        logMessage.params = params;
+        logMessage.epochSecond = Math.floorDiv(now, NANOS_PER_SECOND);
+        logMessage.nano = (int) Math.floorMod(now, NANOS_PER_SECOND);
+        logMessage.thread = Thread.currentThread().getName();
+        logMessage.logger = name;
+        logMessage.callSite = callSite;
+        try {
+            dispatch(logMessage);
+        } finally {
+            logMessage.release();
+        }
     }
 
-    public StringBuilder formatMessage(LogMessage msg, boolean applyColor) {
-        Level level = msg.level;
-        Color color = applyColor ? console.getColorByLevel(level) : null;
-        applyColor = color != null;
+    private void dispatch(LogMessage logMessage) {
+        AsyncQueue queue = asyncQueue;
+        if (queue == null) {
+            writeMessage(logMessage);
+        } else {
+            queue.offer(logMessage, config);
+        }
+    }
 
+    public StringBuilder formatMessage(LogMessage msg, boolean applyColor) {
         StringBuilder format = new StringBuilder(128);
-        String levelName = msg.level.toString();
-
-        format.append("[");
-        format.append(msg.time);
-        format.append("] ");
+        formatMessage(msg, applyColor, format);
+        return format;
+    }
 
-        if (applyColor) {
-            format.append(color);
+    /**
+     * Appends the formatted message to the given builder
+     */
+    void formatMessage(LogMessage msg, boolean applyColor, StringBuilder format) {
+        LevelPrefixes.Entry prefix = levelPrefixes().entry(msg.level);
+        PatternLayout layout = config.layout;
+        if (layout != null) {
+            layout.format(msg, config, applyColor ? prefix.color : null, format);
+            return;
         }
-        format.append("[");
-        format.append(levelName).append("] ");
-
-        int levelPadLen = config.levelPadLength - 1 - levelName.length();
-        padWithSpaces(format, levelPadLen);
 
-        int indent = format.length() - (applyColor ? color.sgr.length() : 0);
+        int start = format.length();
+        format.append('[');
+        msg.appendTime(config.timestamps, format);
+        format.append("] ");
+        int indent = format.length() - start + prefix.plain.length;
+        format.append(applyColor ? prefix.colored : prefix.plain);
 
         format.append(msg.method);
         format.append(' ');
         int methodPadLen = config.methodPadLength - 1 - msg.method.length();
         padWithSpaces(format, methodPadLen);
-        format.append(msg.message);
+        int messageStart = format.length();
+        MessageFormatter.format(format, msg.message, msg.params);
+        if (format.length() - messageStart > config.maxMessageLength) {
+            format.setLength(messageStart + config.maxMessageLength);
+        }
         if (applyColor) {
-            format.append(Color.RESET);
+            format.append(LevelPrefixes.RESET);
         }
         format.append('\n');
         // Append stacktrace starting from index 1
         if (msg.stack != null) {
-            if (applyColor) {
-                appendRestOfStackTrace(msg.stack, format, indent + 2, color);
-            } else {
-                appendRestOfStackTrace(msg.stack, format, indent + 2, null);
-            }
+            appendRestOfStackTrace(msg.stack, format, indent + 2, applyColor ? prefix : null);
         }
+    }
 
-        return format;
+    /**
+     * Returns the prefix table of the current colors and level padding, rebuilding it if either changed
+     */
+    private LevelPrefixes levelPrefixes() {
+        LevelPrefixes prefixes = this.prefixes;
+        Color[] palette = console.palette;
+        int padLength = config.levelPadLength;
+        if (prefixes.palette != palette || prefixes.padLength != padLength) {
+            prefixes = LevelPrefixes.of(palette, padLength);
+            this.prefixes = prefixes;
+        }
+        return prefixes;
     }
 
-    private void appendRestOfStackTrace(StackTraceElement[] stack, StringBuilder format, int indent, Color color) {
-        boolean applyColor = color != null;
+    private void appendRestOfStackTrace(StackTraceElement[] stack, StringBuilder format, int indent,
+                                        LevelPrefixes.Entry colored) {
         for (int i = 1; i < stack.length && i < config.maxStackTraceDepth; i++) {
             padWithSpaces(format, indent);
-            String element = stackElementToMethod(stack[i]);
-            if (applyColor) {
-                format.append(color);
-            }
-            format.append("at ").append(element);
-            if (applyColor) {
-                format.append(Color.RESET);
+            format.append(colored != null ? colored.coloredAt : LevelPrefixes.AT);
+            appendMethod(format, stack[i]);
+            if (colored != null) {
+                format.append(LevelPrefixes.RESET);
             }
             format.append('\n');
         }
     }
 
-    // Based on the original StackTraceElement.toString()
+    /**
+     * Returns the rendered method of the call site, cached as long as the method format doesn't change
+     */
+    private String methodOf(int callSite, StackTraceElement caller) {
+        if (callSite == 0) {
+            return stackElementToMethod(caller);
+        }
+        MethodNames names = methodNames;
+        boolean includePackage = config.includePackage;
+        boolean includeLineNumber = config.includeLineNumber;
+        if (names.includePackage != includePackage || names.includeLineNumber != includeLineNumber) {
+            names = new MethodNames(includePackage, includeLineNumber);
+            methodNames = names;
+        }
+        String[] rendered = names.rendered;
+        if (callSite < rendered.length && rendered[callSite] != null) {
+            return rendered[callSite];
+        }
+        String method = stackElementToMethod(caller);
+        if (callSite >= rendered.length) {
+            // Racing threads may drop each other's entries, those are rendered again on the next call
+            rendered = Arrays.copyOf(rendered, Math.max(callSite + 1, rendered.length * 2));
+            names.rendered = rendered;
+        }
+        rendered[callSite] = method;
+        return method;
+    }
+
+    private static final class MethodNames {
+        final boolean includePackage;
+        final boolean includeLineNumber;
+        volatile String[] rendered = new String[64];
+
+        MethodNames(boolean includePackage, boolean includeLineNumber) {
+            this.includePackage = includePackage;
+            this.includeLineNumber = includeLineNumber;
+        }
+    }
+
     private String stackElementToMethod(StackTraceElement el) {
-        StringBuilder format = new StringBuilder();
+        StringBuilder format = new StringBuilder(64);
+        appendMethod(format, el);
+        return format.toString();
+    }
 
+    private void appendMethod(StringBuilder format, StackTraceElement el) {
+        appendMethod(format, el, config);
+    }
+
+    // Based on the original StackTraceElement.toString()
+    static void appendMethod(StringBuilder format, StackTraceElement el, LoggerConfig config) {
+        String className = el.getClassName();
         if (config.includePackage) {
-            format.append(el.getClassName());
+            format.append(className);
         } else {
-            String simpleClass = toSimpleClassName(el.getClassName());
-            format.append(simpleClass);
+            format.append(className, className.lastIndexOf('.') + 1, className.length());
         }
         format.append('.');
         format.append(el.getMethodName());
 
         if (el.isNativeMethod()) {
             format.append("(Native Method)");
-        } else {
-            String fileName = el.getFileName();
-            int lineNumber = el.getLineNumber();
-
-            format.append((fileName != null && lineNumber >= 0 && config.includeLineNumber) ?
-                    "(" + fileName + ":" + lineNumber + ")" :
-                    (fileName != null ?  "("+fileName+")" : "(Unknown Source)"));
+            return;
         }
-
-        return format.toString();
-    }
-
-    private static String toSimpleClassName(String fullClassName) {
-        return fullClassName.substring(fullClassName.lastIndexOf('.') + 1);
+        String fileName = el.getFileName();
+        int lineNumber = el.getLineNumber();
+        if (fileName == null) {
+            format.append("(Unknown Source)");
+            return;
+        }
+        format.append('(').append(fileName);
+        if (lineNumber >= 0 && config.includeLineNumber) {
+            format.append(':').append(lineNumber);
+        }
+        format.append(')');
     }
 
-    private void writeMessage(LogMessage logMessage) {
+    void writeMessage(LogMessage logMessage) {
         if (config.consoleOutputEnabled) {
-            String format = formatMessage(logMessage, console.isColorEnabled()).toString();
-            if (logMessage.level.value > config.stdErrLevel.value) {
-                console.outPrint(format);
+            boolean toStdErr = logMessage.level.value <= config.stdErrLevel.value;
+            if (console.writesDirectly(toStdErr)) {
+                MessageEncoder encoder = MessageEncoder.acquire();
+                try {
+                    formatMessage(logMessage, console.isColorEnabled(), encoder.text);
+                    console.write(encoder.encode(), toStdErr);
+                } finally {
+                    encoder.release();
+                }
             } else {
-                console.errPrint(format);
+                String format = formatMessage(logMessage, console.isColorEnabled()).toString();
+                if (toStdErr) {
+                    console.errPrint(format);
+                } else {
+                    console.outPrint(format);
+                }
             }
         }
 
         if (config.fileOutputEnabled && fileAppender.isAttached()) {
-            StringBuilder format = formatMessage(logMessage, false);
-            // There's no way to get bytes from a StringBuilder directly
-            byte[] bytes = format.toString().getBytes(StandardCharsets.UTF_8);
-            fileAppender.logToFile(bytes);
+            if (fileAppender.getFormat() == FileFormat.BINARY) {
+                fileAppender.logToFile(logMessage, config.maxMessageLength, config.maxStackTraceDepth);
+            } else {
+                MessageEncoder encoder = MessageEncoder.acquire();
+                try {
+                    if (fileAppender.getFormat() == FileFormat.JSON) {
+                        JsonLayout.format(logMessage, config, encoder.text);
+                    } else {
+                        formatMessage(logMessage, false, encoder.text);
+                    }
+                    fileAppender.logToFile(encoder.encode(), logMessage.level);
+                } finally {
+                    encoder.release();
+                }
+            }
         }
 
-        for (Appender appender : appenders) {
-            appender.log(logMessage);
+        // Indexed loop, the iterator would be the only garbage on this path
+        Appender[] appenders = this.appenders;
+        if (appenders.length > 0 && logMessage.time == null) {
+            // Appenders may read the public field directly
+            logMessage.time = logMessage.getTime();
+        }
+        for (int i = 0; i < appenders.length; i++) {
+            try {
+                appenders[i].log(logMessage);
+            } catch (RuntimeException e) {
+                // A failing appender must not prevent the others from receiving the message
+                getInternalLogger().error("Appender failed: " + e);
+            }
         }
     }
 
@@ -404,6 +879,45 @@ public class Logger {
         }
     }
 
+    /**
+     * Enables or disables asynchronous logging. When enabled, callers only publish messages into a ring buffer
+     * while a background thread formats and writes them. Disabling drains pending messages first.
+     */
+    public synchronized void enableAsync(boolean enabled) {
+        if (enabled == (asyncQueue != null)) {
+            return;
+        }
+        if (enabled) {
+            asyncQueue = new AsyncQueue(config.asyncCapacity, this::writeMessage, String.valueOf(name));
+        } else {
+            AsyncQueue queue = asyncQueue;
+            asyncQueue = null;
+            queue.shutdown(5000);
+        }
+    }
+
+    public boolean isAsync() {
+        return asyncQueue != null;
+    }
+
+    /**
+     * Waits until all messages published by an asynchronous logger have been written.
+     * Has no effect on synchronous loggers.
+     *
+     * @return <tt>false</tt> if the timeout elapsed before the messages were written
+     */
+    public boolean flush(long timeoutMillis) {
+        AsyncQueue queue = asyncQueue;
+        return queue == null || queue.awaitDrained(timeoutMillis);
+    }
+
+    /**
+     * Returns the queue of an asynchronous logger or <tt>null</tt> if the logger is synchronous
+     */
+    public AsyncQueue getAsyncQueue() {
+        return asyncQueue;
+    }
+
     public boolean isAttached() {
         return fileAppender.isAttached();
     }
@@ -412,8 +926,74 @@ public class Logger {
         return fileAppender;
     }
 
-    public void addAppender(Appender appender) {
-        appenders.add(appender);
+    /**
+     * Adds an appender called with every logged message. If {@link LoggerConfig#setAppenderBatching batching}
+     * is enabled, a plain appender is wrapped into a {@link BatchingAppender}, it can still be removed by itself.
+     */
+    public synchronized void addAppender(Appender appender) {
+        if (appender == null) {
+            return;
+        }
+        int batchSize = config.appenderBatchSize;
+        if (batchSize > 0 && !(appender instanceof BatchingAppender) && !(appender instanceof IsolatedAppender)) {
+            appender = BatchingAppender.adapt(appender, batchSize, config.appenderLingerMillis);
+        }
+        Appender[] appenders = Arrays.copyOf(this.appenders, this.appenders.length + 1);
+        appenders[appenders.length - 1] = appender;
+        this.appenders = appenders;
+    }
+
+    /**
+     * Removes the appender, or the wrapper it was adapted into, wrappers added by this logger are shut down.
+     *
+     * @return <tt>false</tt> if the appender wasn't added to this logger
+     */
+    public synchronized boolean removeAppender(Appender appender) {
+        for (int i = 0; i < appenders.length; i++) {
+            Appender added = appenders[i];
+            if (added == appender
+                    || added instanceof BatchingAppender && ((BatchingAppender) added).getAdaptedAppender() == appender) {
+                Appender[] appenders = new Appender[this.appenders.length - 1];
+                System.arraycopy(this.appenders, 0, appenders, 0, i);
+                System.arraycopy(this.appenders, i + 1, appenders, i, appenders.length - i);
+                this.appenders = appenders;
+                if (added instanceof IsolatedAppender) {
+                    ((IsolatedAppender) added).shutdown(1000);
+                } else if (added instanceof BatchingAppender) {
+                    ((BatchingAppender) added).shutdown(1000);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an appender running on its own thread behind a queue of <code>capacity</code> messages.
+     * A call to the appender taking longer than <code>latencyBudgetMillis</code> trips its circuit breaker,
+     * see {@link IsolatedAppender}. A slow or stuck appender then loses messages instead of stalling the logger.
+     *
+     * @return the appender added to this logger
+     */
+    public IsolatedAppender addIsolatedAppender(Appender appender, int capacity, long latencyBudgetMillis) {
+        IsolatedAppender isolated = new IsolatedAppender(appender, capacity, latencyBudgetMillis,
+                IsolatedAppender.DEFAULT_COOLDOWN_MILLIS);
+        addAppender(isolated);
+        return isolated;
+    }
+
+    /**
+     * Adds an appender which receives messages in batches of up to <code>maxBatchSize</code>,
+     * delivered from a background thread at the latest <code>lingerMillis</code> after the first message of a batch.
+     * Single-message appenders can take part through {@link BatchAppender#of}, or be adapted automatically
+     * when they're added, see {@link LoggerConfig#setAppenderBatching}
+     *
+     * @return the appender added to this logger, which can be awaited or shut down
+     */
+    public BatchingAppender addAppender(BatchAppender appender, int maxBatchSize, long lingerMillis) {
+        BatchingAppender batching = new BatchingAppender(appender, maxBatchSize, lingerMillis);
+        addAppender(batching);
+        return batching;
     }
 
     public Console getConsole() {
@@ -421,9 +1001,7 @@ public class Logger {
     }
 
     private static void padWithSpaces(StringBuilder builder, int padLength) {
-        for (int i = 0; i < padLength; i++) {
-            builder.append(' ');
-        }
+        PatternLayout.pad(builder, padLength);
     }
 
     /**
@@ -431,14 +1009,36 @@ public class Logger {
      * from different loggers could be undesired. Loggers are individually synchronized.
      */
     public void inheritProperties(Logger logger) {
+        this.level = logger.level;
         this.loggingLevel = logger.loggingLevel;
         this.config = logger.config.copy();
 
         this.fileAppender.setRolling(logger.fileAppender.isRolling());
         this.fileAppender.setRollSize(logger.fileAppender.getRollSize());
+        this.fileAppender.setCompressArchives(logger.fileAppender.isCompressingArchives());
+        this.fileAppender.setArchiveCodec(logger.fileAppender.getArchiveCodec());
+        this.fileAppender.setArchiveParallelism(logger.fileAppender.getArchiveParallelism());
+        this.fileAppender.setRollInterval(logger.fileAppender.getRollInterval());
+        this.fileAppender.setMaxArchives(logger.fileAppender.getMaxArchives());
+        this.fileAppender.setMaxArchiveAge(logger.fileAppender.getMaxArchiveAge());
+        this.fileAppender.setMaxArchiveBytes(logger.fileAppender.getMaxArchiveBytes());
+        this.fileAppender.setFlushBytes(logger.fileAppender.getFlushBytesSetting());
+        this.fileAppender.setFlushInterval(logger.fileAppender.getFlushInterval());
+        this.fileAppender.setFlushLevel(logger.fileAppender.getFlushLevel());
+        this.fileAppender.setMappedRegionSize(logger.fileAppender.getMappedRegionSize());
+        this.fileAppender.setFormat(logger.fileAppender.getFormat());
+        try {
+            this.fileAppender.setMode(logger.fileAppender.getMode());
+        } catch (IOException e) {
+            getInternalLogger().exception(e);
+        }
 
         this.console.enableColor(logger.console.isColorEnabled());
         this.console.inheritColors(logger.console);
+        this.console.setDirectOutput(logger.console.isDirectOutput());
+        this.console.setFlushInterval(logger.console.getFlushInterval());
+
+        this.enableAsync(logger.isAsync());
     }
 
     @Override
@@ -1,11 +1,20 @@
 package no4j.core;
 
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 public class LoggerConfig {
     public static final DateTimeFormatter FULL_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
             .withZone(ZoneId.systemDefault());
+    public static final DateTimeFormatter FULL_DATE_MILLIS_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    /**
+     * ISO-8601 in UTC with microseconds, e.g. <code>2024-01-01T12:30:00.123456Z</code>
+     */
+    public static final DateTimeFormatter ISO_8601_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSX").withZone(ZoneOffset.UTC);
     public static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss")
             .withZone(ZoneId.systemDefault());
     /**
@@ -63,7 +72,55 @@ public class LoggerConfig {
     /**
      * The date formatter to use for formatting the time of the log
      */
-    volatile DateTimeFormatter formatter = FULL_DATE_FORMATTER;
+    volatile DateTimeFormatter formatter = FULL_DATE_MILLIS_FORMATTER;
+
+    /**
+     * Renders timestamps with {@link #formatter}, reusing the text of the current second
+     */
+    volatile CachedFormatter timestamps = new CachedFormatter(FULL_DATE_MILLIS_FORMATTER);
+
+    /**
+     * The maximum estimated number of bytes held by the {@link AsyncQueue} of an asynchronous logger
+     */
+    volatile long asyncBufferBytes = 8 * 1024 * 1024;
+
+    /**
+     * Number of slots of the {@link AsyncQueue} created when the logger becomes asynchronous
+     */
+    volatile int asyncCapacity = AsyncQueue.DEFAULT_CAPACITY;
+
+    /**
+     * What to do with messages published to a full {@link AsyncQueue}. Blocks the caller by default.
+     */
+    volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * Level at or below which messages are never dropped under {@link OverflowPolicy#DROP_BELOW_LEVEL}
+     */
+    volatile Level overflowLevel = Level.WARN;
+
+    /**
+     * Plain appenders added while this is positive are delivered batches of up to this many messages,
+     * see {@link #setAppenderBatching}
+     */
+    volatile int appenderBatchSize = 0;
+
+    volatile long appenderLingerMillis = BatchingAppender.DEFAULT_LINGER_MILLIS;
+
+    /**
+     * Whether log calls fill a per-thread message instead of allocating one, see {@link #setReuseMessages}
+     */
+    volatile boolean reuseMessages = false;
+
+    /**
+     * Compiled output pattern, <tt>null</tt> for the default layout. Set with {@link #setPattern}
+     */
+    volatile PatternLayout layout;
+
+    /**
+     * Context fields added to every message written in {@link FileFormat#JSON}, pre-rendered by {@link JsonLayout}
+     */
+    volatile String jsonFields = "";
 
     LoggerConfig() {
     }
@@ -109,14 +166,95 @@ public class LoggerConfig {
 
     public void setFormatter(DateTimeFormatter formatter) {
         if (formatter != null) {
+            this.timestamps = new CachedFormatter(formatter);
             this.formatter = formatter;
+            PatternLayout layout = this.layout;
+            if (layout != null) {
+                // Dates with their own pattern follow the zone of the formatter
+                this.layout = PatternLayout.compile(layout.getPattern(), zone());
+            }
         }
     }
 
+    /**
+     * Sets the layout of formatted messages, see {@link PatternLayout}. <tt>null</tt> restores the default layout.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public void setPattern(String pattern) {
+        layout = pattern == null ? null : PatternLayout.compile(pattern, zone());
+    }
+
+    private ZoneId zone() {
+        ZoneId zone = formatter.getZone();
+        return zone == null ? ZoneId.systemDefault() : zone;
+    }
+
     public void setStdErrLevel(Level minLevel) {
         stdErrLevel = minLevel;
     }
 
+    public void setAsyncBufferBytes(long bytes) {
+        if (bytes > 0) {
+            asyncBufferBytes = bytes;
+        }
+    }
+
+    /**
+     * Sets the number of slots (rounded up to a power of two) of the queue of an asynchronous logger.
+     * Takes effect the next time asynchronous logging is enabled.
+     */
+    public void setAsyncCapacity(int slots) {
+        if (slots > 0) {
+            asyncCapacity = slots;
+        }
+    }
+
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        if (policy != null) {
+            overflowPolicy = policy;
+        }
+    }
+
+    /**
+     * Sets the least severe level which is still retained when {@link OverflowPolicy#DROP_BELOW_LEVEL} is in effect
+     */
+    public void setOverflowLevel(Level level) {
+        if (level != null) {
+            overflowLevel = level;
+        }
+    }
+
+    /**
+     * Sets context fields (e.g. service or host name) added to every message written as JSON.
+     * <tt>null</tt> or an empty map removes them.
+     */
+    public void setJsonFields(Map<String, String> fields) {
+        jsonFields = fields == null ? "" : JsonLayout.renderFields(fields);
+    }
+
+    /**
+     * Plain {@link Appender}s added to the logger afterwards are wrapped into a {@link BatchingAppender},
+     * which delivers their messages from a background thread in batches of up to <code>maxBatchSize</code>.
+     * Appenders which also implement {@link BatchAppender} receive whole batches, others one message per call.
+     * 0 (default) delivers messages to plain appenders on the logging thread.
+     */
+    public void setAppenderBatching(int maxBatchSize, long lingerMillis) {
+        appenderBatchSize = Math.max(0, maxBatchSize);
+        appenderLingerMillis = Math.max(0, lingerMillis);
+    }
+
+    /**
+     * Log calls fill a preallocated per-thread {@link LogMessage} instead of allocating one,
+     * asynchronous loggers copy it into messages preallocated in their queue. Method names are cached per call site.
+     * Appenders which keep messages have to copy them. Disabled by default.
+     * Log calls are only free of allocations when this is combined with {@link #includeMethod}<tt>(false)</tt>
+     * and text file output, see the README.
+     */
+    public void setReuseMessages(boolean enabled) {
+        reuseMessages = enabled;
+    }
+
     public static LoggerConfig create() {
         return new LoggerConfig();
     }
@@ -127,6 +265,7 @@ public class LoggerConfig {
         config.consoleOutputEnabled = consoleOutputEnabled;
         config.fileOutputEnabled = fileOutputEnabled;
         config.formatter = formatter;
+        config.timestamps = timestamps;
         config.stdErrLevel = stdErrLevel;
 
         config.includeLineNumber = includeLineNumber;
@@ -136,6 +275,16 @@ public class LoggerConfig {
         config.levelPadLength = levelPadLength;
         config.maxStackTraceDepth = maxStackTraceDepth;
 
+        config.asyncBufferBytes = asyncBufferBytes;
+        config.asyncCapacity = asyncCapacity;
+        config.overflowPolicy = overflowPolicy;
+        config.overflowLevel = overflowLevel;
+        config.jsonFields = jsonFields;
+        config.layout = layout;
+        config.reuseMessages = reuseMessages;
+        config.appenderBatchSize = appenderBatchSize;
+        config.appenderLingerMillis = appenderLingerMillis;
+
         return config;
     }
 }
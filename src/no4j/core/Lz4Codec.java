@@ -0,0 +1,171 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes an LZ4 frame (https://github.com/lz4/lz4/blob/dev/doc/lz4_Frame_format.md) readable by the
+ * <code>lz4</code> tool. Blocks of 64 KB are compressed independently with a greedy single-probe
+ * match finder, which favours speed over ratio like the reference fast mode.
+ * The frame ends with an xxHash32 checksum of the content.
+ */
+final class Lz4Codec implements ArchiveCodec {
+    private static final int MAGIC = 0x184D2204;
+    // Version 01, independent blocks, content checksum
+    private static final byte FLG = 0x64;
+    // 64 KB max block size
+    private static final byte BD = 0x40;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int UNCOMPRESSED_FLAG = 0x80000000;
+
+    private static final int MIN_MATCH = 4;
+    // The last match must start at least 12 bytes before the end of the block
+    private static final int MF_LIMIT = 12;
+    // The last 5 bytes are always literals
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    @Override
+    public String getExtension() {
+        return ".lz4";
+    }
+
+    @Override
+    public void compress(InputStream in, OutputStream out) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        byte[] compressed = new byte[4 + maxCompressedLength(BLOCK_SIZE)];
+        int[] table = new int[1 << HASH_LOG];
+        XXHash32 checksum = new XXHash32(0);
+
+        byte[] header = new byte[7];
+        writeIntLE(header, 0, MAGIC);
+        header[4] = FLG;
+        header[5] = BD;
+        header[6] = (byte) (XXHash32.hash(header, 4, 2, 0) >>> 8);
+        out.write(header);
+
+        int length;
+        while ((length = readBlock(in, block)) > 0) {
+            checksum.update(block, 0, length);
+            int compressedLength = compressBlock(block, length, compressed, 4, table);
+            if (compressedLength >= length) {
+                writeIntLE(compressed, 0, length | UNCOMPRESSED_FLAG);
+                out.write(compressed, 0, 4);
+                out.write(block, 0, length);
+            } else {
+                writeIntLE(compressed, 0, compressedLength);
+                out.write(compressed, 0, 4 + compressedLength);
+            }
+        }
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 4, checksum.getValue());
+        out.write(trailer);
+    }
+
+    private static int readBlock(InputStream in, byte[] block) throws IOException {
+        int length = 0, read;
+        while (length < block.length && (read = in.read(block, length, block.length - length)) > 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses <code>src[0, length)</code> into an LZ4 block
+     *
+     * @return the length of the block, the output must fit {@link #maxCompressedLength}
+     */
+    static int compressBlock(byte[] src, int length, byte[] dst, int dstOffset, int[] table) {
+        int dp = dstOffset;
+        int anchor = 0;
+        if (length >= MF_LIMIT + 1) {
+            Arrays.fill(table, -1);
+            int matchLimit = length - LAST_LITERALS;
+            int mfLimit = length - MF_LIMIT;
+            int ip = 0;
+            int searches = 1 << SKIP_TRIGGER;
+            while (ip < mfLimit) {
+                int sequence = XXHash32.readIntLE(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || XXHash32.readIntLE(src, ref) != sequence) {
+                    // Step further the longer no match is found, like the reference implementation
+                    ip += searches++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searches = 1 << SKIP_TRIGGER;
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                int token = dp;
+                dp = writeLiterals(src, anchor, ip - anchor, dst, dp);
+                dst[dp++] = (byte) (ip - ref);
+                dst[dp++] = (byte) ((ip - ref) >>> 8);
+                int matchCode = matchLength - MIN_MATCH;
+                dst[token] |= (byte) Math.min(matchCode, 15);
+                if (matchCode >= 15) {
+                    dp = writeLength(dst, dp, matchCode - 15);
+                }
+                ip += matchLength;
+                anchor = ip;
+                if (ip - 2 < mfLimit) {
+                    table[hash(XXHash32.readIntLE(src, ip - 2))] = ip - 2;
+                }
+            }
+        }
+        // Last literals, a token without a match
+        return writeLiterals(src, anchor, length - anchor, dst, dp) - dstOffset;
+    }
+
+    /**
+     * Writes the token with the literal length and the literals. The match length is added to the token
+     * by the caller, if the sequence has a match.
+     */
+    private static int writeLiterals(byte[] src, int literalsOffset, int literals, byte[] dst, int dp) {
+        dst[dp++] = (byte) (Math.min(literals, 15) << 4);
+        if (literals >= 15) {
+            dp = writeLength(dst, dp, literals - 15);
+        }
+        System.arraycopy(src, literalsOffset, dst, dp, literals);
+        return dp + literals;
+    }
+
+    private static int writeLength(byte[] dst, int dp, int length) {
+        while (length >= 255) {
+            dst[dp++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    @Override
+    public String toString() {
+        return "lz4";
+    }
+}
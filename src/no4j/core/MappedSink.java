@@ -0,0 +1,125 @@
+package no4j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sink which copies writes into a memory-mapped window of the file. Appending costs a memory copy,
+ * there's no system call per write and the operating system takes care of write-back.
+ * <p>
+ * The window is remapped one region further whenever it fills up, which extends the file by a whole region.
+ * On close the file is truncated to the number of bytes actually written. If the process dies before that,
+ * the file ends with zero padding, which is trimmed when the file is opened again.
+ * </p>
+ * Regions are {@link Unmapper unmapped} as soon as they're left and before the file is truncated, so that
+ * the file can be truncated and renamed. Where mappings can't be released and a mapped file can't be
+ * truncated (Windows), the sink can't be created.
+ */
+final class MappedSink implements FileSink {
+    static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+    private static final int SCAN_CHUNK = 8192;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+
+    MappedSink(Path path, int regionSize) throws IOException {
+        if (!Unmapper.isSupported() && isWindows()) {
+            throw new IOException("Memory-mapped files can't be released on this JVM, which Windows requires");
+        }
+        this.regionSize = regionSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            position = realLength();
+            map(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        Unmapper.unmap(region);
+        region = null;
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+    }
+
+    @Override
+    public void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!region.hasRemaining()) {
+                map(regionStart + regionSize);
+            }
+            int len = Math.min(bytes.remaining(), region.remaining());
+            int limit = bytes.limit();
+            bytes.limit(bytes.position() + len);
+            region.put(bytes);
+            bytes.limit(limit);
+            position += len;
+        }
+    }
+
+    @Override
+    public int pending() {
+        // Mapped memory is visible in the file right away
+        return 0;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public long length() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Unmapper.unmap(region);
+        region = null;
+        try {
+            channel.truncate(position);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").startsWith("Windows");
+    }
+
+    /**
+     * Returns the length of the file without the zero padding of a region that wasn't released
+     */
+    private long realLength() throws IOException {
+        long end = channel.size();
+        long limit = Math.max(0, end - regionSize);
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_CHUNK);
+        while (end > limit) {
+            int len = (int) Math.min(SCAN_CHUNK, end - limit);
+            chunk.clear();
+            chunk.limit(len);
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, end - len + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) != 0) {
+                    return end - len + i + 1;
+                }
+            }
+            end -= len;
+        }
+        return end;
+    }
+}
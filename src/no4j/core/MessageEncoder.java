@@ -0,0 +1,86 @@
+package no4j.core;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable formatting and encoding state. Messages are formatted into {@link #text},
+ * then encoded to UTF-8 into a direct buffer that can be handed to a channel without further copies.
+ * After the buffers have grown to fit the largest message no allocation takes place.
+ * <p>
+ * Instances are confined to a thread, see {@link #acquire}.
+ * </p>
+ */
+final class MessageEncoder {
+    private static final int INITIAL_CAPACITY = 512;
+
+    private static final ThreadLocal<MessageEncoder> encoders = ThreadLocal.withInitial(MessageEncoder::new);
+
+    final StringBuilder text = new StringBuilder(INITIAL_CAPACITY);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 2);
+
+    private boolean inUse;
+
+    private MessageEncoder() {
+    }
+
+    /**
+     * Returns this thread's encoder with an empty {@link #text}. If the thread's encoder is already in use
+     * (logging from within an appender or an exception handler) a temporary one is returned instead.
+     * Every acquired encoder must be given back with {@link #release}
+     */
+    static MessageEncoder acquire() {
+        MessageEncoder encoder = encoders.get();
+        if (encoder.inUse) {
+            encoder = new MessageEncoder();
+        }
+        encoder.inUse = true;
+        encoder.text.setLength(0);
+        return encoder;
+    }
+
+    void release() {
+        inUse = false;
+    }
+
+    /**
+     * Encodes {@link #text} to UTF-8
+     *
+     * @return buffer ready to be read, valid until the next call
+     */
+    ByteBuffer encode() {
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        text.getChars(0, length, chars, 0);
+
+        while (true) {
+            charBuffer.clear();
+            charBuffer.limit(length);
+            bytes.clear();
+            encoder.reset();
+            CoderResult result = encoder.encode(charBuffer, bytes, true);
+            if (!result.isOverflow()) {
+                result = encoder.flush(bytes);
+            }
+            if (!result.isOverflow()) {
+                break;
+            }
+            bytes = ByteBuffer.allocateDirect(Math.max(bytes.capacity() * 2, length * 3));
+        }
+        bytes.flip();
+        return bytes;
+    }
+}
@@ -0,0 +1,91 @@
+package no4j.core;
+
+import java.util.Arrays;
+
+/**
+ * Substitutes <code>{}</code> placeholders of parameterized messages with their arguments.
+ * Arguments are appended directly to the output, without building an intermediate String.
+ * A placeholder preceded by a backslash is always written literally, as <code>{}</code>,
+ * whether arguments are left or not. Placeholders left without an argument are written as they are,
+ * surplus arguments are ignored. Plain messages (<tt>null</tt> arguments) aren't patterns and are written verbatim.
+ */
+final class MessageFormatter {
+    private static final char ESCAPE = '\\';
+    private static final String ESCAPED_PLACEHOLDER = "\\{}";
+
+    private MessageFormatter() {
+    }
+
+    static void format(StringBuilder out, String pattern, Object[] params) {
+        if (pattern == null) {
+            out.append((String) null);
+            return;
+        }
+        if (params == null || params.length == 0 && pattern.indexOf(ESCAPED_PLACEHOLDER) == -1) {
+            out.append(pattern);
+            return;
+        }
+        int count = params.length;
+        int start = 0, param = 0;
+        int placeholder;
+        while ((placeholder = pattern.indexOf("{}", start)) != -1) {
+            if (placeholder > 0 && pattern.charAt(placeholder - 1) == ESCAPE) {
+                out.append(pattern, start, placeholder - 1).append("{}");
+            } else if (param < count) {
+                out.append(pattern, start, placeholder);
+                appendArgument(out, params[param++]);
+            } else {
+                out.append(pattern, start, placeholder + 2);
+            }
+            start = placeholder + 2;
+        }
+        out.append(pattern, start, pattern.length());
+    }
+
+    static String format(String pattern, Object[] params) {
+        int count = params == null ? 0 : params.length;
+        StringBuilder out = new StringBuilder(pattern == null ? 4 : pattern.length() + 16 * count);
+        format(out, pattern, params);
+        return out.toString();
+    }
+
+    static void appendArgument(StringBuilder out, Object arg) {
+        if (arg == null) {
+            out.append("null");
+            return;
+        }
+        try {
+            if (arg instanceof String) {
+                out.append((String) arg);
+            } else if (arg.getClass().isArray()) {
+                appendArray(out, arg);
+            } else {
+                out.append(arg);
+            }
+        } catch (RuntimeException e) {
+            out.append("[").append(arg.getClass().getName()).append(".toString() threw ").append(e).append(']');
+        }
+    }
+
+    private static void appendArray(StringBuilder out, Object array) {
+        if (array instanceof Object[]) {
+            out.append(Arrays.deepToString((Object[]) array));
+        } else if (array instanceof int[]) {
+            out.append(Arrays.toString((int[]) array));
+        } else if (array instanceof long[]) {
+            out.append(Arrays.toString((long[]) array));
+        } else if (array instanceof byte[]) {
+            out.append(Arrays.toString((byte[]) array));
+        } else if (array instanceof char[]) {
+            out.append(Arrays.toString((char[]) array));
+        } else if (array instanceof double[]) {
+            out.append(Arrays.toString((double[]) array));
+        } else if (array instanceof float[]) {
+            out.append(Arrays.toString((float[]) array));
+        } else if (array instanceof short[]) {
+            out.append(Arrays.toString((short[]) array));
+        } else if (array instanceof boolean[]) {
+            out.append(Arrays.toString((boolean[]) array));
+        }
+    }
+}
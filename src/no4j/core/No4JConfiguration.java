@@ -7,13 +7,14 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Global singleton configuration class
  */
 public class No4JConfiguration {
     public static final String VERSION = "1.2.0";
-    private static No4JConfiguration config;
+    private static volatile No4JConfiguration config;
 
     private static final String LOGGER_NAME = "name"; // unique name
     private static final String LOGGER_LEVEL = "level"; // integer/level name
@@ -22,15 +23,40 @@ public class No4JConfiguration {
     private static final String LOGGER_MESSAGE_LINE_NUMBER = "msg_line_number"; // boolean
     private static final String LOGGER_MESSAGE_PACKAGE = "msg_package"; // boolean
     private static final String LOGGER_MESSAGE_STACK_TRACE_DEPTH = "msg_stack_trace_depth"; // integer
+    private static final String LOGGER_MESSAGE_REUSE = "msg_reuse"; // boolean
     private static final String LOGGER_CONSOLE_USE_COLOR = "console_use_color"; // boolean
     private static final String LOGGER_CONSOLE_ENABLED = "console_enabled"; // boolean
+    private static final String LOGGER_CONSOLE_DIRECT = "console_direct"; // boolean
+    private static final String LOGGER_CONSOLE_FLUSH_INTERVAL = "console_flush_interval"; // milliseconds
     private static final String LOGGER_FILE_ENABLED = "file_enabled"; // boolean
     private static final String LOGGER_FILE = "file_out"; // file path
     private static final String LOGGER_FILE_ROLLING_SIZE = "file_rolling_size"; // size in bytes
     private static final String LOGGER_FILE_ROLLING_ENABLED = "file_rolling_enabled"; // boolean
+    private static final String LOGGER_FILE_ROLLING_COMPRESS = "file_rolling_compress"; // boolean
+    private static final String LOGGER_FILE_ARCHIVE_CODEC = "file_archive_codec"; // gzip/gzip:level/lz4
+    private static final String LOGGER_FILE_ARCHIVE_PARALLELISM = "file_archive_parallelism"; // integer
+    private static final String LOGGER_FILE_ROLLING_INTERVAL = "file_rolling_interval"; // none/hourly/daily
+    private static final String LOGGER_FILE_ROLLING_MAX_ARCHIVES = "file_rolling_max_archives"; // integer
+    private static final String LOGGER_FILE_ROLLING_MAX_AGE = "file_rolling_max_age"; // milliseconds
+    private static final String LOGGER_FILE_ROLLING_MAX_TOTAL_SIZE = "file_rolling_max_total_size"; // size in bytes
+    private static final String LOGGER_FILE_FLUSH_SIZE = "file_flush_size"; // size in bytes
+    private static final String LOGGER_FILE_FLUSH_INTERVAL = "file_flush_interval"; // milliseconds
+    private static final String LOGGER_FILE_FLUSH_LEVEL = "file_flush_level"; // integer/level name
+    private static final String LOGGER_FILE_MODE = "file_mode"; // channel/mapped/gzip
+    private static final String LOGGER_FILE_FORMAT = "file_format"; // text/json/binary
+    private static final String LOGGER_JSON_FIELDS = "json_fields"; // key=value, comma separated
+    private static final String LOGGER_FILE_MAPPED_REGION_SIZE = "file_mapped_region_size"; // size in bytes
     private static final String LOGGER_STDERR_LEVEL = "stderr_level"; // integer/level name
     private static final String DATE_PATTERN = "date_pattern"; // date format pattern
+    private static final String LAYOUT_PATTERN = "layout_pattern"; // e.g. %d %-8level %method %msg%n
     private static final String DATE_ZONE = "date_zone"; // date zone (Instant requires zone)
+    private static final String ASYNC_ENABLED = "async_enabled"; // boolean
+    private static final String ASYNC_BUFFER_SIZE = "async_buffer_size"; // size in bytes
+    private static final String ASYNC_CAPACITY = "async_capacity"; // number of messages
+    private static final String ASYNC_OVERFLOW = "async_overflow"; // block/drop/drop_below_level
+    private static final String ASYNC_OVERFLOW_LEVEL = "async_overflow_level"; // integer/level name
+    private static final String APPENDER_BATCH_SIZE = "appender_batch_size"; // number of messages
+    private static final String APPENDER_BATCH_LINGER = "appender_batch_linger"; // milliseconds
 
     private static final String LOGGER_INHERIT = "inherit"; // existing (symbolic) logger name
 
@@ -38,7 +64,15 @@ public class No4JConfiguration {
 
     private static final ZoneId UTC0 = ZoneId.ofOffset("UTC", ZoneOffset.UTC);
 
-    final List<Logger> loggers = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * Registry of named loggers. Loggers are added and removed while holding the monitor of the configuration.
+     */
+    final ConcurrentHashMap<String, Logger> loggers = new ConcurrentHashMap<>();
+
+    /**
+     * The same loggers sorted by name, so that the descendants of a logger form a contiguous range. Guarded by this.
+     */
+    private final TreeMap<String, Logger> hierarchy = new TreeMap<>();
 
     private No4JConfiguration() {}
 
@@ -46,10 +80,98 @@ public class No4JConfiguration {
      * Returns the configuration singleton
      */
     public static No4JConfiguration get() {
-        if (config == null) {
-            config = new No4JConfiguration();
+        No4JConfiguration configuration = config;
+        if (configuration == null) {
+            synchronized (No4JConfiguration.class) {
+                configuration = config;
+                if (configuration == null) {
+                    configuration = new No4JConfiguration();
+                    config = configuration;
+                }
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Creates a logger registered in this configuration, with the level of its nearest ancestor
+     */
+    Logger newLogger(String name) {
+        Logger logger = new Logger(name);
+        logger.registry = this;
+        logger.loggingLevel = inheritedLevel(name);
+        return logger;
+    }
+
+    /**
+     * Returns the registered logger with the given name, creating it if it doesn't exist.
+     * Runs under the same monitor as level changes, so a new logger never misses a change of its ancestors.
+     */
+    synchronized Logger register(String name) {
+        Logger logger = loggers.get(name);
+        if (logger == null) {
+            logger = newLogger(name);
+            add(logger);
+        }
+        return logger;
+    }
+
+    synchronized void add(Logger logger) {
+        loggers.put(logger.getName(), logger);
+        hierarchy.put(logger.getName(), logger);
+    }
+
+    /**
+     * Removes the logger and updates its descendants which inherited its level
+     *
+     * @return <tt>false</tt> if the logger wasn't registered
+     */
+    synchronized boolean unregister(Logger logger) {
+        if (!loggers.remove(logger.getName(), logger)) {
+            return false;
+        }
+        hierarchy.remove(logger.getName());
+        logger.registry = null;
+        refreshLevels(logger.getName());
+        return true;
+    }
+
+    /**
+     * Sets the own level of a registered logger, <tt>null</tt> to inherit, and updates its descendants
+     */
+    synchronized void setLevel(Logger logger, Level level) {
+        logger.level = level;
+        logger.loggingLevel = level == null ? inheritedLevel(logger.getName()) : level;
+        refreshLevels(logger.getName());
+    }
+
+    /**
+     * Returns the level of the nearest ancestor that has its own level,
+     * {@link Level#OFF} if there's no such ancestor
+     */
+    Level inheritedLevel(String name) {
+        int dot = name.lastIndexOf('.');
+        while (dot > 0) {
+            Logger ancestor = loggers.get(name.substring(0, dot));
+            if (ancestor != null && ancestor.level != null) {
+                return ancestor.level;
+            }
+            dot = name.lastIndexOf('.', dot - 1);
+        }
+        return Level.OFF;
+    }
+
+    /**
+     * Recomputes effective levels of the descendants of the given logger name which don't have their own level.
+     * Called whenever levels change, so that log calls never have to walk the hierarchy.
+     * Only the descendants are visited: they sort between <code>name.</code> and <code>name/</code>.
+     */
+    private void refreshLevels(String ancestorName) {
+        for (Logger logger : hierarchy.subMap(ancestorName + '.', ancestorName + '/').values()) {
+            if (logger.level == null) {
+                logger.loggingLevel = inheritedLevel(logger.getName());
+            }
         }
-        return config;
     }
 
     /**
@@ -96,9 +218,9 @@ public class No4JConfiguration {
             if (properties.containsKey(LOGGER_INHERIT)) {
                 inheritable.add(loggerSymbol);
             }
-            Logger logger = new Logger(loggerName);
+            Logger logger = configuration.newLogger(loggerName);
             configureLogger(logger, properties);
-            configuration.loggers.add(logger);
+            configuration.add(logger);
         }
 
         // 2. Inherit properties
@@ -122,27 +244,59 @@ public class No4JConfiguration {
             toLogger.inheritProperties(fromLogger);
         }
 
+        // 3. Propagate levels down the name hierarchy
+        for (Logger logger : configuration.loggers.values()) {
+            if (logger.level == null) {
+                logger.loggingLevel = configuration.inheritedLevel(logger.getName());
+            }
+        }
+
         // System.out.println(properties);
-        No4JConfiguration.config = configuration;
+        No4JConfiguration previous;
+        synchronized (No4JConfiguration.class) {
+            previous = No4JConfiguration.config;
+            No4JConfiguration.config = configuration;
+        }
+        if (previous != null) {
+            previous.shutdownQueues();
+        }
+    }
+
+    /**
+     * Drains the queues of the asynchronous loggers of a replaced configuration and stops their threads.
+     * Loggers still referenced elsewhere keep working synchronously.
+     */
+    private void shutdownQueues() {
+        for (Logger logger : loggers.values()) {
+            logger.enableAsync(false);
+        }
     }
 
     private static void configureLogger(Logger logger, HashMap<String, String> properties) {
         Logger internalLogger = Logger.getInternalLogger();
+        String asyncEnabled = null;
         for (HashMap.Entry<String, String> entry : properties.entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue();
             switch (key) {
                 case LOGGER_LEVEL:
                 case LOGGER_STDERR_LEVEL:
+                case ASYNC_OVERFLOW_LEVEL:
+                case LOGGER_FILE_FLUSH_LEVEL:
                     Level level = Level.byName(value);
                     if (level == null) {
                         internalLogger.error("The level '" + value + "' does not match any default logging levels.");
                         continue;
                     }
                     if (key.equals(LOGGER_LEVEL)) {
+                        logger.level = level;
                         logger.loggingLevel = level;
-                    } else {
+                    } else if (key.equals(LOGGER_STDERR_LEVEL)) {
                         logger.config.stdErrLevel = level;
+                    } else if (key.equals(ASYNC_OVERFLOW_LEVEL)) {
+                        logger.config.overflowLevel = level;
+                    } else {
+                        logger.fileAppender.setFlushLevel(level);
                     }
                     break;
                 case LOGGER_MESSAGE_MAX_LEN:
@@ -156,6 +310,17 @@ public class No4JConfiguration {
                 case LOGGER_CONSOLE_ENABLED:
                     logger.config.consoleOutputEnabled = Boolean.parseBoolean(value);
                     break;
+                case LOGGER_CONSOLE_DIRECT:
+                    logger.console.setDirectOutput(Boolean.parseBoolean(value));
+                    break;
+                case LOGGER_CONSOLE_FLUSH_INTERVAL:
+                    try {
+                        long millis = Long.parseLong(value);
+                        logger.console.setFlushInterval(millis);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
                 case LOGGER_CONSOLE_USE_COLOR:
                     logger.console.enableColor(Boolean.parseBoolean(value));
                     break;
@@ -171,6 +336,9 @@ public class No4JConfiguration {
                 case LOGGER_MESSAGE_PACKAGE:
                     logger.config.includePackage = Boolean.parseBoolean(value);
                     break;
+                case LOGGER_MESSAGE_REUSE:
+                    logger.config.setReuseMessages(Boolean.parseBoolean(value));
+                    break;
                 case LOGGER_MESSAGE_STACK_TRACE_DEPTH:
                     try {
                         logger.config.maxStackTraceDepth = Integer.parseInt(value);
@@ -194,12 +362,166 @@ public class No4JConfiguration {
                     boolean isRolling = Boolean.parseBoolean(value);
                     logger.fileAppender.setRolling(isRolling);
                     break;
+                case LOGGER_FILE_ROLLING_COMPRESS:
+                    logger.fileAppender.setCompressArchives(Boolean.parseBoolean(value));
+                    break;
+                case LOGGER_FILE_ARCHIVE_CODEC:
+                    ArchiveCodec codec = ArchiveCodec.byName(value);
+                    if (codec == null) {
+                        internalLogger.error("The archive codec '" + value + "' does not exist.");
+                        continue;
+                    }
+                    logger.fileAppender.setArchiveCodec(codec);
+                    break;
+                case LOGGER_FILE_ARCHIVE_PARALLELISM:
+                    try {
+                        logger.fileAppender.setArchiveParallelism(Integer.parseInt(value));
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_ROLLING_INTERVAL:
+                    RollInterval interval = RollInterval.byName(value);
+                    if (interval == null && !value.equalsIgnoreCase("none")) {
+                        internalLogger.error("The rolling interval '" + value + "' does not exist.");
+                        continue;
+                    }
+                    logger.fileAppender.setRollInterval(interval);
+                    break;
+                case LOGGER_FILE_ROLLING_MAX_ARCHIVES:
+                    try {
+                        logger.fileAppender.setMaxArchives(Integer.parseInt(value));
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_ROLLING_MAX_AGE:
+                    try {
+                        logger.fileAppender.setMaxArchiveAge(Long.parseLong(value));
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_ROLLING_MAX_TOTAL_SIZE:
+                    try {
+                        logger.fileAppender.setMaxArchiveBytes(Long.parseLong(value));
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_FLUSH_SIZE:
+                    try {
+                        long sizeInBytes = Long.parseLong(value);
+                        logger.fileAppender.setFlushBytes(sizeInBytes);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_FLUSH_INTERVAL:
+                    try {
+                        long millis = Long.parseLong(value);
+                        logger.fileAppender.setFlushInterval(millis);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_MODE:
+                    FileMode mode = FileMode.byName(value);
+                    if (mode == null) {
+                        internalLogger.error("The file mode '" + value + "' does not exist.");
+                        continue;
+                    }
+                    try {
+                        logger.fileAppender.setMode(mode);
+                    } catch (IOException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case LOGGER_FILE_FORMAT:
+                    FileFormat format = FileFormat.byName(value);
+                    if (format == null) {
+                        internalLogger.error("The file format '" + value + "' does not exist.");
+                        continue;
+                    }
+                    logger.fileAppender.setFormat(format);
+                    break;
+                case LOGGER_JSON_FIELDS:
+                    LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+                    for (String field : value.split(",")) {
+                        int equal = field.indexOf('=');
+                        if (equal < 1) {
+                            internalLogger.error("Invalid JSON field '" + field.trim() + "'");
+                            continue;
+                        }
+                        fields.put(field.substring(0, equal).trim(), field.substring(equal + 1).trim());
+                    }
+                    logger.config.setJsonFields(fields);
+                    break;
+                case LOGGER_FILE_MAPPED_REGION_SIZE:
+                    try {
+                        int sizeInBytes = Integer.parseInt(value);
+                        logger.fileAppender.setMappedRegionSize(sizeInBytes);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
                 case DATE_PATTERN:
-                    logger.config.formatter = DateTimeFormatter.ofPattern(value).withZone(UTC0);
+                    logger.config.setFormatter(DateTimeFormatter.ofPattern(value).withZone(UTC0));
+                    break;
+                case LAYOUT_PATTERN:
+                    try {
+                        logger.config.setPattern(value);
+                    } catch (IllegalArgumentException e) {
+                        internalLogger.error(e.getMessage());
+                    }
                     break;
                 case DATE_ZONE:
                     ZoneId zoneId = ZoneId.of(value);
-                    logger.config.formatter = logger.config.formatter.withZone(zoneId);
+                    logger.config.setFormatter(logger.config.formatter.withZone(zoneId));
+                    break;
+                case ASYNC_ENABLED:
+                    // Enabled once the queue settings are read, whatever the order of the keys
+                    asyncEnabled = value;
+                    break;
+                case ASYNC_CAPACITY:
+                    try {
+                        int capacity = Integer.parseInt(value);
+                        logger.config.setAsyncCapacity(capacity);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case ASYNC_BUFFER_SIZE:
+                    try {
+                        long sizeInBytes = Long.parseLong(value);
+                        logger.config.setAsyncBufferBytes(sizeInBytes);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case APPENDER_BATCH_SIZE:
+                    try {
+                        int batchSize = Integer.parseInt(value);
+                        logger.config.setAppenderBatching(batchSize, logger.config.appenderLingerMillis);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case APPENDER_BATCH_LINGER:
+                    try {
+                        long millis = Long.parseLong(value);
+                        logger.config.setAppenderBatching(logger.config.appenderBatchSize, millis);
+                    } catch (NumberFormatException e) {
+                        internalLogger.exception(e);
+                    }
+                    break;
+                case ASYNC_OVERFLOW:
+                    OverflowPolicy policy = OverflowPolicy.byName(value);
+                    if (policy == null) {
+                        internalLogger.error("The overflow policy '" + value + "' does not exist.");
+                        continue;
+                    }
+                    logger.config.overflowPolicy = policy;
                     break;
                 case LOGGER_NAME:
                 case LOGGER_INHERIT:
@@ -208,16 +530,14 @@ public class No4JConfiguration {
                     internalLogger.warn("Unrecognized key suffix in '" + key + '\'');
             }
         }
+        if (asyncEnabled != null) {
+            logger.enableAsync(Boolean.parseBoolean(asyncEnabled));
+        }
     }
 
-    // This method is only used internally during configuration, so it's single-threaded
+    // This method is only used internally during configuration
     private Logger getLogger(String name) {
-        for (Logger logger : loggers) {
-            if (logger.getName().equals(name)) {
-                return logger;
-            }
-        }
-        return null;
+        return loggers.get(name);
     }
 
     private static HashMap<String, HashMap<String, String>> readIniFile(List<String> lines) {
@@ -0,0 +1,31 @@
+package no4j.core;
+
+/**
+ * Decides what happens to a message published to a full {@link AsyncQueue}
+ */
+public enum OverflowPolicy {
+    /**
+     * The calling thread waits until the drainer frees enough space
+     */
+    BLOCK,
+    /**
+     * The message is discarded
+     */
+    DROP,
+    /**
+     * Messages less severe than {@link LoggerConfig#overflowLevel} are discarded, the rest block
+     */
+    DROP_BELOW_LEVEL;
+
+    /**
+     * Returns a policy corresponding to its name (case-insensitive), if not found null is returned
+     */
+    public static OverflowPolicy byName(String name) {
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,337 @@
+package no4j.core;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formats messages according to a pattern such as <code>%d{HH:mm:ss.SSS} %-8level %thread %method %msg%n</code>.
+ * The pattern is compiled once into an array of segment writers, formatting a message is a single pass over them.
+ * <p>
+ * Conversions, each may be preceded by a minimum width (right-aligned, left-aligned if prefixed with '-')
+ * and a maximum width after a dot, e.g. <code>%-8.8level</code>:
+ * <ul>
+ *     <li><code>%d</code>, <code>%date</code>: time of the message as rendered by the logger's formatter,
+ *     or with the given formatter pattern, e.g. <code>%d{HH:mm:ss.SSS}</code></li>
+ *     <li><code>%p</code>, <code>%level</code>: name of the level</li>
+ *     <li><code>%t</code>, <code>%thread</code>: name of the thread which logged the message</li>
+ *     <li><code>%c</code>, <code>%logger</code>: name of the logger</li>
+ *     <li><code>%M</code>, <code>%method</code>: method which logged the message</li>
+ *     <li><code>%m</code>, <code>%msg</code>, <code>%message</code>: the message</li>
+ *     <li><code>%ex</code>, <code>%exception</code>: stack trace lines, appended at the end if not present</li>
+ *     <li><code>%n</code>: new line, <code>%%</code>: percent sign</li>
+ * </ul>
+ * Level and message are colored on consoles with colors enabled.
+ * </p>
+ */
+public final class PatternLayout {
+    private static final char[] SPACES = new char[128];
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    private final String pattern;
+    private final Segment[] segments;
+
+    private PatternLayout(String pattern, Segment[] segments) {
+        this.pattern = pattern;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles the pattern. Dates with their own formatter pattern are rendered in the given zone.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed or has an unknown conversion
+     */
+    public static PatternLayout compile(String pattern, ZoneId zone) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean hasStack = false;
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i < length && pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            if (literal.length() > 0) {
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            boolean leftAlign = i < length && pattern.charAt(i) == '-';
+            if (leftAlign) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isDigit(pattern.charAt(i))) {
+                i++;
+            }
+            int minWidth = start == i ? 0 : Integer.parseInt(pattern.substring(start, i));
+            int maxWidth = Integer.MAX_VALUE;
+            if (i < length && pattern.charAt(i) == '.') {
+                start = ++i;
+                while (i < length && Character.isDigit(pattern.charAt(i))) {
+                    i++;
+                }
+                if (start == i) {
+                    throw new IllegalArgumentException("Missing maximum width at " + start + " in: " + pattern);
+                }
+                maxWidth = Integer.parseInt(pattern.substring(start, i));
+            }
+            start = i;
+            while (i < length && Character.isLetter(pattern.charAt(i))) {
+                i++;
+            }
+            String name = pattern.substring(start, i);
+            String option = null;
+            if (i < length && pattern.charAt(i) == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed option at " + i + " in: " + pattern);
+                }
+                option = pattern.substring(i + 1, end);
+                i = end + 1;
+            }
+
+            Segment segment;
+            boolean colored = false;
+            switch (name) {
+                case "d":
+                case "date":
+                    segment = option == null ? new Time() :
+                            new FormattedTime(DateTimeFormatter.ofPattern(option).withZone(zone));
+                    break;
+                case "p":
+                case "level":
+                    segment = new LevelName();
+                    colored = true;
+                    break;
+                case "t":
+                case "thread":
+                    segment = new ThreadName();
+                    break;
+                case "c":
+                case "logger":
+                    segment = new LoggerName();
+                    break;
+                case "M":
+                case "method":
+                    segment = new Method();
+                    break;
+                case "m":
+                case "msg":
+                case "message":
+                    segment = new Message();
+                    colored = true;
+                    break;
+                case "ex":
+                case "exception":
+                    segment = new Stack();
+                    hasStack = true;
+                    break;
+                case "n":
+                    segment = new Literal("\n");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown conversion '%" + name + "' in: " + pattern);
+            }
+            if (minWidth > 0 || maxWidth < Integer.MAX_VALUE) {
+                segment = new Padded(segment, leftAlign, minWidth, maxWidth);
+            }
+            if (colored) {
+                segment = new Colored(segment);
+            }
+            segments.add(segment);
+        }
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString()));
+        }
+        if (!hasStack) {
+            segments.add(new Stack());
+        }
+        return new PatternLayout(pattern, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * Appends the formatted message to the builder
+     *
+     * @param color color of the message's level, <tt>null</tt> if the output isn't colored
+     */
+    void format(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.write(msg, config, color, out);
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Appends the given number of spaces
+     */
+    static void pad(StringBuilder out, int count) {
+        while (count > 0) {
+            int chunk = Math.min(count, SPACES.length);
+            out.append(SPACES, 0, chunk);
+            count -= chunk;
+        }
+    }
+
+    private static void insertPadding(StringBuilder out, int offset, int count) {
+        while (count > 0) {
+            int chunk = Math.min(count, SPACES.length);
+            out.insert(offset, SPACES, 0, chunk);
+            count -= chunk;
+        }
+    }
+
+    private interface Segment {
+        void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out);
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class Time implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            msg.appendTime(config.timestamps, out);
+        }
+    }
+
+    private static final class FormattedTime implements Segment {
+        private final CachedFormatter formatter;
+
+        FormattedTime(DateTimeFormatter formatter) {
+            this.formatter = new CachedFormatter(formatter);
+        }
+
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            formatter.formatTo(msg.epochSecond, msg.nano, out);
+        }
+    }
+
+    private static final class LevelName implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            out.append(msg.level.name);
+        }
+    }
+
+    private static final class ThreadName implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            out.append(msg.thread);
+        }
+    }
+
+    private static final class LoggerName implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            out.append(msg.logger);
+        }
+    }
+
+    private static final class Method implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            out.append(msg.method);
+        }
+    }
+
+    private static final class Message implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            int start = out.length();
+            MessageFormatter.format(out, msg.message, msg.params);
+            if (out.length() - start > config.maxMessageLength) {
+                out.setLength(start + config.maxMessageLength);
+            }
+        }
+    }
+
+    private static final class Stack implements Segment {
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            StackTraceElement[] stack = msg.stack;
+            if (stack == null) {
+                return;
+            }
+            for (int i = 1; i < stack.length && i < config.maxStackTraceDepth; i++) {
+                out.append("    at ");
+                Logger.appendMethod(out, stack[i], config);
+                out.append('\n');
+            }
+        }
+    }
+
+    private static final class Padded implements Segment {
+        private final Segment segment;
+        private final boolean leftAlign;
+        private final int minWidth;
+        private final int maxWidth;
+
+        Padded(Segment segment, boolean leftAlign, int minWidth, int maxWidth) {
+            this.segment = segment;
+            this.leftAlign = leftAlign;
+            this.minWidth = minWidth;
+            this.maxWidth = maxWidth;
+        }
+
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            int start = out.length();
+            segment.write(msg, config, color, out);
+            int written = out.length() - start;
+            if (written > maxWidth) {
+                out.setLength(start + maxWidth);
+            } else if (written < minWidth) {
+                if (leftAlign) {
+                    pad(out, minWidth - written);
+                } else {
+                    insertPadding(out, start, minWidth - written);
+                }
+            }
+        }
+    }
+
+    private static final class Colored implements Segment {
+        private final Segment segment;
+
+        Colored(Segment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public void write(LogMessage msg, LoggerConfig config, Color color, StringBuilder out) {
+            if (color == null) {
+                segment.write(msg, config, null, out);
+                return;
+            }
+            out.append(color.sgr);
+            segment.write(msg, config, color, out);
+            out.append(Color.RESET.sgr);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package no4j.core;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Calendar boundaries at which {@link FileAppender} rolls the log file, see {@link TriggeringPolicy#every}
+ */
+public enum RollInterval {
+    HOURLY(ChronoUnit.HOURS),
+    DAILY(ChronoUnit.DAYS);
+
+    final ChronoUnit unit;
+
+    RollInterval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Returns an interval corresponding to its name (case-insensitive), if not found null is returned
+     */
+    public static RollInterval byName(String name) {
+        for (RollInterval interval : values()) {
+            if (interval.name().equalsIgnoreCase(name)) {
+                return interval;
+            }
+        }
+        return null;
+    }
+}
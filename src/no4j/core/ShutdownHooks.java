@@ -0,0 +1,54 @@
+package no4j.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the exit actions of live background components on a single JVM shutdown hook, so that no accepted
+ * message is lost. Actions run phase by phase: asynchronous queues hand their messages to appenders first,
+ * appender workers deliver them next, buffered output is written, finally pending archives are completed.
+ */
+final class ShutdownHooks {
+    static final int DRAIN = 0;
+    static final int DELIVER = 1;
+    static final int FLUSH = 2;
+    static final int ARCHIVE = 3;
+
+    /**
+     * Time each waiting action is given to finish
+     */
+    static final long EXIT_TIMEOUT_MILLIS = 2000;
+
+    private static final List<Map<Object, Runnable>> phases = Arrays.asList(
+            new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ShutdownHooks::runAll, "no4j-shutdown"));
+    }
+
+    private ShutdownHooks() {
+    }
+
+    static void register(Object owner, int phase, Runnable onExit) {
+        phases.get(phase).put(owner, onExit);
+    }
+
+    static void unregister(Object owner) {
+        for (Map<Object, Runnable> actions : phases) {
+            actions.remove(owner);
+        }
+    }
+
+    private static void runAll() {
+        for (Map<Object, Runnable> actions : phases) {
+            for (Runnable action : actions.values()) {
+                try {
+                    action.run();
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+}
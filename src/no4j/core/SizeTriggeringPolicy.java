@@ -0,0 +1,19 @@
+package no4j.core;
+
+final class SizeTriggeringPolicy implements TriggeringPolicy {
+    private final long bytes;
+
+    SizeTriggeringPolicy(long bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public boolean isTriggered(long size, long nowMillis) {
+        return size >= bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "size(" + bytes + ")";
+    }
+}
@@ -0,0 +1,36 @@
+package no4j.core;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Triggers on the first write past the boundary of the interval the file was started in.
+ * The boundary is computed once per file, so the check is a single comparison.
+ */
+final class TimeTriggeringPolicy implements TriggeringPolicy {
+    private final RollInterval interval;
+    private final ZoneId zone;
+    private long nextBoundary = Long.MAX_VALUE;
+
+    TimeTriggeringPolicy(RollInterval interval, ZoneId zone) {
+        this.interval = interval;
+        this.zone = zone;
+    }
+
+    @Override
+    public boolean isTriggered(long size, long nowMillis) {
+        return size > 0 && nowMillis >= nextBoundary;
+    }
+
+    @Override
+    public void started(long startMillis) {
+        ZonedDateTime start = Instant.ofEpochMilli(startMillis).atZone(zone);
+        nextBoundary = start.truncatedTo(interval.unit).plus(1, interval.unit).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public String toString() {
+        return "every(" + interval + ", " + zone + ")";
+    }
+}
@@ -0,0 +1,47 @@
+package no4j.core;
+
+import java.time.ZoneId;
+
+/**
+ * Decides when {@link FileAppender} rolls the log file. Checked after every write, under the appender's lock.
+ * Policies may be stateful, so an instance must not be shared between appenders.
+ */
+public interface TriggeringPolicy {
+    /**
+     * @param size      current size of the log file in bytes
+     * @param nowMillis current time in milliseconds since the epoch
+     * @return whether the file should be rolled
+     */
+    boolean isTriggered(long size, long nowMillis);
+
+    /**
+     * Called whenever a file is opened: after attaching to a file and after every roll.
+     *
+     * @param startMillis time the content of the file starts from.
+     *                    For an existing non-empty file that's its last modification time.
+     */
+    default void started(long startMillis) {
+    }
+
+    /**
+     * Triggers once the file reaches <code>bytes</code>
+     */
+    static TriggeringPolicy size(long bytes) {
+        return new SizeTriggeringPolicy(bytes);
+    }
+
+    /**
+     * Triggers on the first write past the hour or day boundary in the given zone,
+     * following the one the content of the file started in
+     */
+    static TriggeringPolicy every(RollInterval interval, ZoneId zone) {
+        return new TimeTriggeringPolicy(interval, zone);
+    }
+
+    /**
+     * Triggers as soon as any of the policies does, e.g. <code>anyOf(size(bytes), every(DAILY, zone))</code>
+     */
+    static TriggeringPolicy anyOf(TriggeringPolicy... policies) {
+        return new CompositeTriggeringPolicy(policies);
+    }
+}
@@ -0,0 +1,68 @@
+package no4j.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases the mapping of a {@link MappedByteBuffer} right away instead of when it's garbage collected.
+ * Uses <code>Unsafe.invokeCleaner</code> on Java 9 and later, the buffer's cleaner on Java 8.
+ * The buffer must not be accessed afterwards, doing so crashes the JVM.
+ */
+final class Unmapper {
+    private static final MethodHandle UNMAP = lookup();
+
+    private Unmapper() {
+    }
+
+    /**
+     * Whether mappings can be released on this JVM
+     */
+    static boolean isSupported() {
+        return UNMAP != null;
+    }
+
+    /**
+     * Releases the mapping if supported
+     *
+     * @return <tt>false</tt> if the mapping is left to the garbage collector
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (UNMAP == null || buffer == null) {
+            return false;
+        }
+        try {
+            UNMAP.invoke((ByteBuffer) buffer);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle lookup() {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return lookup.unreflect(invokeCleaner).bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not Java 9+, try the cleaner of Java 8
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            MethodHandle getCleaner = lookup.unreflect(cleaner)
+                    .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            MethodHandle doClean = lookup.unreflect(clean).asType(MethodType.methodType(void.class, Object.class));
+            return MethodHandles.filterReturnValue(getCleaner, doClean);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package no4j.core;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Daemon thread running the loop of a background component such as {@link AsyncQueue},
+ * {@link BatchingAppender} or {@link IsolatedAppender}, along with the lifecycle they share.
+ * While started, the component's exit action is registered with {@link ShutdownHooks}.
+ */
+final class Worker {
+    static final long PARK_NANOS = 1_000_000;
+
+    private final Thread thread;
+    private final int phase;
+    private final Runnable onExit;
+    private volatile boolean running = true;
+
+    /**
+     * @param loop   runs until {@link #isRunning} is <tt>false</tt> and no work is left
+     * @param onExit waits for accepted work when the JVM exits
+     */
+    Worker(String name, Runnable loop, int phase, Runnable onExit) {
+        this.thread = new Thread(loop, name);
+        this.thread.setDaemon(true);
+        this.phase = phase;
+        this.onExit = onExit;
+    }
+
+    void start() {
+        thread.start();
+        ShutdownHooks.register(this, phase, onExit);
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Whether work has to be done on the calling thread: after shutdown, or when it's submitted
+     * by the worker itself (e.g. an appender logging), which would otherwise wait on itself
+     */
+    boolean runsInline() {
+        return !running || Thread.currentThread() == thread;
+    }
+
+    void unpark() {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits until the condition holds. The worker isn't woken, it may be parked by the work itself
+     *
+     * @return <tt>false</tt> if the timeout elapsed or the worker died first
+     */
+    boolean await(BooleanSupplier done, long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (!done.getAsBoolean()) {
+            if (!thread.isAlive() || System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(PARK_NANOS / 16);
+        }
+        return true;
+    }
+
+    /**
+     * Lets the loop finish the remaining work and waits for the thread to terminate
+     */
+    void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ShutdownHooks.unregister(this);
+    }
+}
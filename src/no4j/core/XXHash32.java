@@ -0,0 +1,93 @@
+package no4j.core;
+
+/**
+ * Streaming xxHash32, used for the checksums of LZ4 frames
+ */
+final class XXHash32 {
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private final int seed;
+    private final byte[] stripe = new byte[16];
+    private int v1, v2, v3, v4;
+    private int buffered;
+    private long length;
+
+    XXHash32(int seed) {
+        this.seed = seed;
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+    }
+
+    static int hash(byte[] bytes, int offset, int length, int seed) {
+        XXHash32 hash = new XXHash32(seed);
+        hash.update(bytes, offset, length);
+        return hash.getValue();
+    }
+
+    void update(byte[] bytes, int offset, int len) {
+        length += len;
+        int end = offset + len;
+        if (buffered > 0) {
+            int fill = Math.min(16 - buffered, len);
+            System.arraycopy(bytes, offset, stripe, buffered, fill);
+            buffered += fill;
+            offset += fill;
+            if (buffered < 16) {
+                return;
+            }
+            consume(stripe, 0);
+            buffered = 0;
+        }
+        for (; offset + 16 <= end; offset += 16) {
+            consume(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, stripe, 0, end - offset);
+        buffered = end - offset;
+    }
+
+    private void consume(byte[] bytes, int offset) {
+        v1 = round(v1, readIntLE(bytes, offset));
+        v2 = round(v2, readIntLE(bytes, offset + 4));
+        v3 = round(v3, readIntLE(bytes, offset + 8));
+        v4 = round(v4, readIntLE(bytes, offset + 12));
+    }
+
+    private static int round(int acc, int input) {
+        return Integer.rotateLeft(acc + input * PRIME2, 13) * PRIME1;
+    }
+
+    int getValue() {
+        int h;
+        if (length >= 16) {
+            h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+                    + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += (int) length;
+        int i = 0;
+        for (; i + 4 <= buffered; i += 4) {
+            h = Integer.rotateLeft(h + readIntLE(stripe, i) * PRIME3, 17) * PRIME4;
+        }
+        for (; i < buffered; i++) {
+            h = Integer.rotateLeft(h + (stripe[i] & 0xFF) * PRIME5, 11) * PRIME1;
+        }
+        h ^= h >>> 15;
+        h *= PRIME2;
+        h ^= h >>> 13;
+        h *= PRIME3;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
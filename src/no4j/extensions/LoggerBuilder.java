@@ -121,6 +121,11 @@ public class LoggerBuilder {
         return this;
     }
 
+    public LoggerBuilder fullDateMillisFormatter() {
+        config.setFormatter(LoggerConfig.FULL_DATE_MILLIS_FORMATTER);
+        return this;
+    }
+
     public LoggerBuilder unreachableColor(Color color) {
         console.setUnreachable(color);
         console.enableColor(true);
@@ -2,6 +2,13 @@ package no4j.core;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
 import static org.junit.Assert.*;
 
 public class AppenderTest {
@@ -46,4 +53,278 @@ public class AppenderTest {
         assertEquals(2, emitted[1]);
         assertEquals(2, emitted[2]);
     }
+
+    @Test
+    public void testBatchesBySize() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        List<Integer> sizes = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        BatchingAppender appender = logger.addAppender(batch -> {
+            synchronized (sizes) {
+                sizes.add(batch.size());
+                for (LogMessage message : batch) {
+                    messages.add(message.message);
+                }
+            }
+        }, 10, 60_000);
+        for (int i = 0; i < 25; i++) {
+            logger.info("Message " + i);
+        }
+        assertTrue(appender.awaitDelivered(5000));
+        appender.shutdown(1000);
+
+        assertEquals(25, messages.size());
+        assertEquals("Message 0", messages.get(0));
+        assertEquals("Message 24", messages.get(24));
+        for (int size : sizes) {
+            assertTrue(size <= 10);
+        }
+    }
+
+    @Test
+    public void testBatchLingers() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        List<Integer> sizes = new ArrayList<>();
+        BatchingAppender appender = logger.addAppender(batch -> {
+            synchronized (sizes) {
+                sizes.add(batch.size());
+            }
+        }, 100, 50);
+        logger.info("One");
+        logger.info("Two");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (sizes) {
+                if (!sizes.isEmpty()) {
+                    break;
+                }
+            }
+            Thread.sleep(5);
+        }
+        appender.shutdown(1000);
+        synchronized (sizes) {
+            assertEquals(1, sizes.size());
+            assertEquals(2, (int) sizes.get(0));
+        }
+    }
+
+    @Test
+    public void testAdaptedSingleAppender() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        final int[] emitted = {0};
+        BatchingAppender appender = logger.addAppender(BatchAppender.of(newMessage -> emitted[0]++), 4, 10);
+        for (int i = 0; i < 9; i++) {
+            logger.info("Adapted");
+        }
+        assertTrue(appender.awaitDelivered(5000));
+        appender.shutdown(1000);
+        assertEquals(9, emitted[0]);
+    }
+
+    @Test
+    public void testPlainAppendersAdaptedWhenBatching() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.getConfig().setAppenderBatching(4, 10);
+
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        Appender plain = newMessage -> threads.add(Thread.currentThread());
+        class BothAppender implements Appender, BatchAppender {
+            final List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+
+            @Override
+            public void log(LogMessage message) {
+                sizes.add(1);
+            }
+
+            @Override
+            public void log(List<LogMessage> batch) {
+                sizes.add(batch.size());
+            }
+        }
+        BothAppender both = new BothAppender();
+        logger.addAppender(plain);
+        logger.addAppender(both);
+        for (int i = 0; i < 9; i++) {
+            logger.info("Batched");
+        }
+        // Removing by the original reference shuts the wrapper down, which delivers what's pending
+        assertTrue(logger.removeAppender(plain));
+        assertTrue(logger.removeAppender(both));
+
+        assertEquals(9, threads.size());
+        assertFalse(threads.contains(Thread.currentThread()));
+        int total = 0;
+        for (int size : both.sizes) {
+            assertTrue(size <= 4);
+            total += size;
+        }
+        assertEquals(9, total);
+    }
+
+    @Test
+    public void testFailingAppenderDoesNotStopOthers() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        final int[] emitted = {0};
+        logger.addAppender(newMessage -> {
+            throw new IllegalStateException("Broken sink");
+        });
+        logger.addAppender(newMessage -> emitted[0]++);
+        logger.info("Still delivered");
+        assertEquals(1, emitted[0]);
+    }
+
+    @Test
+    public void testStuckAppenderDoesNotBlockLogging() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        CountDownLatch release = new CountDownLatch(1);
+        IsolatedAppender stuck = logger.addIsolatedAppender(newMessage -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, 16, 20);
+        AtomicInteger emitted = new AtomicInteger();
+        logger.addAppender(newMessage -> emitted.incrementAndGet());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            logger.info("Not stalled");
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(1000, emitted.get());
+        assertTrue(elapsedMillis < 2000);
+        assertTrue(stuck.getDroppedCount() > 0);
+
+        // Stuck for longer than the budget, the breaker trips on the next message
+        Thread.sleep(50);
+        logger.info("Tripping");
+        assertTrue(stuck.isTripped());
+        assertTrue(stuck.getTripCount() >= 1);
+
+        release.countDown();
+        logger.removeAppender(stuck);
+    }
+
+    @Test
+    public void testBreakerRecovers() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        AtomicInteger slowCalls = new AtomicInteger(1);
+        AtomicInteger emitted = new AtomicInteger();
+        IsolatedAppender isolated = new IsolatedAppender(newMessage -> {
+            if (slowCalls.getAndDecrement() > 0) {
+                LockSupport.parkNanos(50_000_000);
+            }
+            emitted.incrementAndGet();
+        }, 16, 10, 50);
+        logger.addAppender(isolated);
+
+        logger.info("Slow");
+        assertTrue(isolated.awaitDelivered(5000));
+        assertTrue(isolated.isTripped());
+        logger.info("Dropped while open");
+        assertEquals(1, isolated.getDroppedCount());
+
+        Thread.sleep(60);
+        logger.info("Fast again");
+        assertTrue(isolated.awaitDelivered(5000));
+        assertFalse(isolated.isTripped());
+        assertEquals(2, emitted.get());
+        logger.removeAppender(isolated);
+    }
+
+    @Test
+    public void testAddWhileLogging() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+
+        AtomicInteger emitted = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                logger.info("Concurrent");
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 100; i++) {
+            logger.addAppender(newMessage -> emitted.incrementAndGet());
+        }
+        writer.join();
+        logger.info("Last");
+        assertTrue(emitted.get() >= 100);
+    }
+
+    @Test
+    public void testReusedMessages() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.getConfig().setReuseMessages(true);
+
+        List<LogMessage> received = new ArrayList<>();
+        List<LogMessage> copies = new ArrayList<>();
+        logger.addAppender(message -> {
+            received.add(message);
+            copies.add(message.copy());
+        });
+        logger.info("First");
+        logger.warn("Second");
+
+        assertSame(received.get(0), received.get(1));
+        assertTrue(received.get(0).isReusable());
+        assertFalse(copies.get(0).isReusable());
+        assertEquals("First", copies.get(0).message);
+        assertSame(Level.INFO, copies.get(0).level);
+        assertEquals("Second", copies.get(1).message);
+        assertSame(Level.WARN, copies.get(1).level);
+        assertTrue(copies.get(0).method.contains("testReusedMessages"));
+        assertEquals("testReusedMessages", copies.get(0).getCallSite().getMethodName());
+        assertNotEquals(copies.get(0).callSite, copies.get(1).callSite);
+    }
+
+    @Test
+    public void testRetainingAppenderCopiesReusedMessages() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.getConfig().setReuseMessages(true);
+
+        List<String> messages = new ArrayList<>();
+        BatchingAppender appender = logger.addAppender(batch -> {
+            synchronized (messages) {
+                for (LogMessage message : batch) {
+                    messages.add(message.getFormattedMessage());
+                }
+            }
+        }, 10, 60_000);
+        for (int i = 0; i < 25; i++) {
+            logger.info("Message {}", i);
+        }
+        assertTrue(appender.awaitDelivered(5000));
+        appender.shutdown(1000);
+
+        assertEquals(25, messages.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals("Message " + i, messages.get(i));
+        }
+    }
 }
@@ -0,0 +1,230 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class ArchiveCodecTest {
+
+    private static byte[] logLines(int count) {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            text.append("[2024-01-01 12:00:").append(i % 60).append("] [INFO] Service.handle(Service.java:")
+                    .append(random.nextInt(500)).append(") request ").append(random.nextInt()).append(" done\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] compress(ArchiveCodec codec, byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.compress(new ByteArrayInputStream(content), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testXXHash32() {
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x02CC5D05, XXHash32.hash(new byte[0], 0, 0, 0));
+        assertEquals(0x32D153FF, XXHash32.hash(abc, 0, 3, 0));
+
+        byte[] content = logLines(100);
+        XXHash32 streamed = new XXHash32(0);
+        for (int i = 0; i < content.length; i += 7) {
+            streamed.update(content, i, Math.min(7, content.length - i));
+        }
+        assertEquals(XXHash32.hash(content, 0, content.length, 0), streamed.getValue());
+    }
+
+    @Test
+    public void testGZipRoundTrip() throws IOException {
+        byte[] content = logLines(5000);
+        ArchiveCodec fast = ArchiveCodec.gzip(1);
+        ArchiveCodec best = ArchiveCodec.byName("gzip:9");
+        assertEquals(".gz", fast.getExtension());
+        for (int i = 0; i < 2; i++) {
+            // The second round reuses the deflater
+            assertArrayEquals(content, gunzip(compress(fast, content)));
+        }
+        assertTrue(compress(best, content).length <= compress(fast, content).length);
+        assertArrayEquals(new byte[0], gunzip(compress(fast, new byte[0])));
+    }
+
+    @Test
+    public void testParallelGZip() throws IOException {
+        byte[] content = logLines(40_000);
+        ArchiveCodec gzip = ArchiveCodec.gzip(6);
+        byte[] serial = compressInParallel(gzip, content, 1);
+        for (int parallelism : new int[]{2, 4, 16}) {
+            byte[] parallel = compressInParallel(gzip, content, parallelism);
+            assertArrayEquals(content, gunzip(parallel));
+            // Chunks are primed with the previous one, the ratio barely changes
+            assertTrue(parallel.length < serial.length * 1.05);
+        }
+        // Exactly one chunk, a shorter last chunk and no input
+        for (int length : new int[]{256 * 1024, 256 * 1024 + 1, 0}) {
+            byte[] part = Arrays.copyOf(content, length);
+            assertArrayEquals(part, gunzip(compressInParallel(gzip, part, 4)));
+        }
+    }
+
+    private static byte[] compressInParallel(ArchiveCodec codec, byte[] content, int parallelism)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.compress(new ByteArrayInputStream(content), out, parallelism);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testLz4RoundTrip() throws IOException {
+        ArchiveCodec lz4 = ArchiveCodec.byName("LZ4");
+        assertEquals(".lz4", lz4.getExtension());
+
+        byte[] content = logLines(5000);
+        byte[] compressed = compress(lz4, content);
+        assertTrue(compressed.length < content.length / 2);
+        assertArrayEquals(content, decodeLz4Frame(compressed));
+
+        byte[] random = new byte[200_000];
+        new Random(7).nextBytes(random);
+        assertArrayEquals(random, decodeLz4Frame(compress(lz4, random)));
+
+        byte[] repeated = new byte[100_000];
+        Arrays.fill(repeated, (byte) 'a');
+        assertArrayEquals(repeated, decodeLz4Frame(compress(lz4, repeated)));
+
+        for (int length = 0; length < 40; length++) {
+            byte[] small = Arrays.copyOf(content, length);
+            assertArrayEquals(small, decodeLz4Frame(compress(lz4, small)));
+        }
+    }
+
+    @Test
+    public void testUnknownCodec() {
+        assertNull(ArchiveCodec.byName("zip"));
+        assertNull(ArchiveCodec.byName("gzip:0"));
+        assertNull(ArchiveCodec.byName("gzip:x"));
+    }
+
+    @Test
+    public void testRollWithLz4() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-lz4");
+        Path testPath = directory.resolve("lz4.log");
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setArchiveCodec(ArchiveCodec.lz4());
+
+        byte[] content = logLines(1000);
+        appender.logToFile(content);
+        appender.roll();
+        assertTrue(appender.awaitArchives(10_000));
+        appender.detach();
+
+        Path[] archives;
+        try (Stream<Path> files = Files.list(directory)) {
+            archives = files.filter(path -> path.toString().endsWith("_lz4.log.lz4")).toArray(Path[]::new);
+        }
+        assertEquals(1, archives.length);
+        assertArrayEquals(content, decodeLz4Frame(Files.readAllBytes(archives[0])));
+        FileAppenderTest.deleteDirectory(directory);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Decoder written from the LZ4 frame and block format specifications, verifies the checksums
+     */
+    private static byte[] decodeLz4Frame(byte[] frame) {
+        assertEquals(0x184D2204, XXHash32.readIntLE(frame, 0));
+        int flg = frame[4] & 0xFF;
+        assertEquals(1, flg >>> 6);
+        assertTrue("independent blocks", (flg & 0x20) != 0);
+        assertEquals(XXHash32.hash(frame, 4, 2, 0) >>> 8 & 0xFF, frame[6] & 0xFF);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int p = 7;
+        while (true) {
+            int size = XXHash32.readIntLE(frame, p);
+            p += 4;
+            if (size == 0) {
+                break;
+            }
+            int length = size & 0x7FFFFFFF;
+            assertTrue(length <= 64 * 1024 + 64 * 1024 / 255 + 16);
+            if (size < 0) {
+                out.write(frame, p, length);
+            } else {
+                byte[] block = decodeBlock(frame, p, length);
+                out.write(block, 0, block.length);
+            }
+            p += length;
+        }
+        byte[] content = out.toByteArray();
+        if ((flg & 0x04) != 0) {
+            assertEquals(XXHash32.hash(content, 0, content.length, 0), XXHash32.readIntLE(frame, p));
+            p += 4;
+        }
+        assertEquals(frame.length, p);
+        return content;
+    }
+
+    private static byte[] decodeBlock(byte[] src, int offset, int length) {
+        byte[] dst = new byte[64 * 1024];
+        int sp = offset, end = offset + length, dp = 0;
+        while (true) {
+            int token = src[sp++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    b = src[sp++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, sp, dst, dp, literals);
+            sp += literals;
+            dp += literals;
+            if (sp == end) {
+                // The last sequence has only literals, of which there are at least 5 if it follows a match
+                return Arrays.copyOf(dst, dp);
+            }
+            int distance = (src[sp] & 0xFF) | (src[sp + 1] & 0xFF) << 8;
+            sp += 2;
+            assertTrue(distance > 0 && distance <= dp);
+            int match = (token & 0x0F) + 4;
+            if ((token & 0x0F) == 15) {
+                int b;
+                do {
+                    b = src[sp++] & 0xFF;
+                    match += b;
+                } while (b == 255);
+            }
+            for (int i = 0; i < match; i++, dp++) {
+                dst[dp] = dst[dp - distance];
+            }
+            assertTrue("the last 5 bytes are literals", end - sp >= 1 + 5);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncQueueTest {
+
+    @Test
+    public void testAllMessagesDelivered() throws InterruptedException {
+        Logger logger = getAsyncLogger();
+        AtomicInteger delivered = new AtomicInteger();
+        logger.addAppender(message -> delivered.incrementAndGet());
+
+        final int threads = 4, perThread = 5000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    logger.info("async");
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(logger.flush(5000));
+        assertEquals(threads * perThread, delivered.get());
+        logger.enableAsync(false);
+    }
+
+    @Test
+    public void testPooledMessagesReleasedAfterDelivery() {
+        List<LogMessage> delivered = new ArrayList<>();
+        AsyncQueue queue = new AsyncQueue(4, delivered::add, "release");
+        LogMessage message = LogMessage.reusable();
+        message.level = Level.INFO;
+        message.message = "Pooled {}";
+        message.params = new Object[]{new Object()};
+        message.stack = new StackTraceElement[0];
+        assertTrue(queue.offer(message, LoggerConfig.create()));
+        assertTrue(queue.awaitDrained(5000));
+        queue.shutdown(1000);
+
+        LogMessage pooled = delivered.get(0);
+        assertNotSame(message, pooled);
+        assertNull(pooled.message);
+        assertNull(pooled.params);
+        assertNull(pooled.stack);
+    }
+
+    @Test
+    public void testMessagesLoggedOnDrainerThread() {
+        Logger logger = getAsyncLogger();
+        final Thread[] writer = new Thread[1];
+        logger.addAppender(message -> writer[0] = Thread.currentThread());
+
+        logger.warn("Which thread?");
+        assertTrue(logger.flush(5000));
+        assertNotNull(writer[0]);
+        assertNotEquals(Thread.currentThread(), writer[0]);
+        logger.enableAsync(false);
+    }
+
+    @Test
+    public void testDropWhenFull() throws InterruptedException {
+        Logger logger = getAsyncLogger();
+        logger.getConfig().setOverflowPolicy(OverflowPolicy.DROP);
+        logger.getConfig().setAsyncBufferBytes(1024);
+        CountDownLatch release = new CountDownLatch(1);
+        logger.addAppender(message -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            logger.info("This message is going to fill the queue up quickly");
+        }
+        release.countDown();
+        assertTrue(logger.flush(5000));
+        assertTrue(logger.getAsyncQueue().getDroppedCount() > 0);
+        logger.enableAsync(false);
+    }
+
+    @Test
+    public void testDropBelowLevelKeepsSevereMessages() {
+        Logger logger = getAsyncLogger();
+        LoggerConfig config = logger.getConfig();
+        config.setOverflowPolicy(OverflowPolicy.DROP_BELOW_LEVEL);
+        config.setOverflowLevel(Level.ERROR);
+        config.setAsyncBufferBytes(1024);
+        AtomicInteger errors = new AtomicInteger();
+        logger.addAppender(message -> {
+            if (message.level == Level.ERROR) {
+                errors.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 200; i++) {
+            logger.debug("Filler message that may get dropped");
+            logger.error("Error that must not be dropped");
+        }
+        assertTrue(logger.flush(5000));
+        assertEquals(200, errors.get());
+        logger.enableAsync(false);
+    }
+
+    @Test
+    public void testReusedMessagesDelivered() throws InterruptedException {
+        Logger logger = getAsyncLogger();
+        logger.getConfig().setReuseMessages(true);
+        final int threads = 4, perThread = 5000;
+        int[][] received = new int[threads][perThread];
+        logger.addAppender(message -> received[(Integer) message.params[0]][(Integer) message.params[1]]++);
+
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int producer = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    logger.info("{} {}", producer, i);
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(logger.flush(5000));
+        logger.enableAsync(false);
+        for (int[] counts : received) {
+            for (int count : counts) {
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    private static Logger getAsyncLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        LoggerConfig config = logger.getConfig();
+        config.enableConsoleOutput(false);
+        config.includeMethod(false);
+        logger.enableAsync(true);
+        return logger;
+    }
+}
@@ -0,0 +1,190 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryLogTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path testPath = Paths.get("test/resources/test_binary.log");
+        Logger logger = newBinaryLogger(testPath);
+        logger.info("First {} of {}", 1, 2);
+        logger.warn("Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144");
+        logger.log("Custom level", Level.custom(55, "NOTICE"));
+        logger.stackTrace("Failed", new IllegalStateException());
+        logger.detachOutput();
+
+        List<LogMessage> messages = readAll(Files.readAllBytes(testPath));
+        Files.delete(testPath);
+        assertEquals(4, messages.size());
+        assertEquals("First 1 of 2", messages.get(0).message);
+        assertSame(Level.INFO, messages.get(0).level);
+        assertTrue(messages.get(0).method.contains("testRoundTrip"));
+        assertEquals("Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144", messages.get(1).message);
+        assertEquals("NOTICE", messages.get(2).level.name);
+        assertEquals(55, messages.get(2).level.value);
+
+        LogMessage trace = messages.get(3);
+        assertSame(Level.ERROR, trace.level);
+        assertEquals("Failed", trace.message);
+        assertNotNull(trace.stack);
+        assertEquals("testRoundTrip", trace.stack[0].getMethodName());
+        assertEquals(BinaryLogTest.class.getName(), trace.stack[0].getClassName());
+        assertTrue(messages.get(0).epochSecond > 0);
+        assertTrue(trace.epochSecond >= messages.get(0).epochSecond);
+    }
+
+    @Test
+    public void testRendersTextLayout() throws IOException {
+        Path testPath = Paths.get("test/resources/test_binary_layout.log");
+        Logger logger = newBinaryLogger(testPath);
+        logger.getConfig().includeMethod(false);
+        logger.info("Rendered");
+        logger.detachOutput();
+
+        LogMessage message = readAll(Files.readAllBytes(testPath)).get(0);
+        Files.delete(testPath);
+        String line = logger.formatMessage(message, false).toString();
+        assertTrue(line.startsWith("[" + message.getTime() + "] [INFO]"));
+        assertTrue(line.endsWith("Rendered\n"));
+    }
+
+    @Test
+    public void testSmallerThanText() throws IOException {
+        Path binaryPath = Paths.get("test/resources/test_binary_size.log");
+        Path textPath = Paths.get("test/resources/test_text_size.log");
+        Logger binary = newBinaryLogger(binaryPath);
+        Logger text = newBinaryLogger(textPath);
+        text.getAppender().setFormat(FileFormat.TEXT);
+        for (int i = 0; i < 1000; i++) {
+            binary.info("Request {} served", i);
+            text.info("Request {} served", i);
+        }
+        binary.detachOutput();
+        text.detachOutput();
+
+        long binarySize = Files.size(binaryPath);
+        long textSize = Files.size(textPath);
+        Files.delete(binaryPath);
+        Files.delete(textPath);
+        assertTrue(binarySize * 2 < textSize);
+    }
+
+    @Test
+    public void testResyncsAfterDamage() throws IOException {
+        Path testPath = Paths.get("test/resources/test_binary_damage.log");
+        Logger logger = newBinaryLogger(testPath);
+        for (int i = 0; i < 10; i++) {
+            logger.info("Message " + i);
+        }
+        logger.detachOutput();
+        byte[] bytes = Files.readAllBytes(testPath);
+        Files.delete(testPath);
+
+        // Flip a bit inside the fifth message
+        bytes[indexOf(bytes, "Message 4".getBytes(StandardCharsets.UTF_8))] ^= 0x20;
+
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes));
+        List<String> messages = new ArrayList<>();
+        LogMessage message;
+        while ((message = reader.next()) != null) {
+            messages.add(message.message);
+        }
+        assertEquals(9, messages.size());
+        assertFalse(messages.contains("Message 4"));
+        assertEquals("Message 9", messages.get(8));
+        assertTrue(reader.getSkippedBytes() > 0);
+    }
+
+    @Test
+    public void testInvalidLevelSkipsRecord() throws IOException {
+        Path testPath = Paths.get("test/resources/test_binary_level.log");
+        Logger logger = newBinaryLogger(testPath);
+        logger.info("Before");
+        FileAppender appender = logger.getAppender();
+        appender.logToFile(new LogMessage(null, Level.OFF, "Off", "m"), Integer.MAX_VALUE, 0);
+        appender.logToFile(new LogMessage(null, new Level(-5, "NEGATIVE") {}, "Negative", "m"), Integer.MAX_VALUE, 0);
+        logger.info("After");
+        logger.detachOutput();
+
+        byte[] bytes = Files.readAllBytes(testPath);
+        Files.delete(testPath);
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes));
+        List<String> messages = new ArrayList<>();
+        LogMessage message;
+        while ((message = reader.next()) != null) {
+            assertNotNull(message.level);
+            messages.add(message.message);
+        }
+        assertEquals(Arrays.asList("Before", "After"), messages);
+        assertTrue(reader.getSkippedBytes() > 0);
+    }
+
+    @Test
+    public void testTornTailAndReopen() throws IOException {
+        Path testPath = Paths.get("test/resources/test_binary_reopen.log");
+        Logger logger = newBinaryLogger(testPath);
+        logger.info("Before crash");
+        logger.info("Torn");
+        logger.detachOutput();
+        // Simulates a crash in the middle of the last record
+        byte[] bytes = Files.readAllBytes(testPath);
+        Files.write(testPath, Arrays.copyOf(bytes, bytes.length - 3));
+
+        logger.setOutput(testPath);
+        logger.info("After restart");
+        logger.detachOutput();
+
+        List<LogMessage> messages = readAll(Files.readAllBytes(testPath));
+        Files.delete(testPath);
+        assertEquals(2, messages.size());
+        assertEquals("Before crash", messages.get(0).message);
+        assertEquals("After restart", messages.get(1).message);
+        assertTrue(messages.get(1).method.contains("testTornTailAndReopen"));
+    }
+
+    private static Logger newBinaryLogger(Path path) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.getAppender().setFormat(FileFormat.BINARY);
+        logger.setOutput(path);
+        return logger;
+    }
+
+    private static List<LogMessage> readAll(byte[] bytes) throws IOException {
+        List<LogMessage> messages = new ArrayList<>();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes))) {
+            LogMessage message;
+            while ((message = reader.next()) != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] sequence) {
+        for (int i = 0; i <= bytes.length - sequence.length; i++) {
+            int j = 0;
+            while (j < sequence.length && bytes[i + j] == sequence[j]) {
+                j++;
+            }
+            if (j == sequence.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
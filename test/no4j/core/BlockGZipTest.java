@@ -0,0 +1,117 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BlockGZipTest {
+
+    private static FileAppender gzipAppender(Path path) throws IOException {
+        FileAppender appender = new FileAppender();
+        appender.setMode(FileMode.GZIP);
+        appender.attach(path);
+        return appender;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testReadableAsPlainGZipAndSeekable() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-bgzf");
+        Path path = directory.resolve("blocks.log.gz");
+        FileAppender appender = gzipAppender(path);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 20_000; i++) {
+            byte[] line = ("Compressed line number " + i + '\n').getBytes(StandardCharsets.UTF_8);
+            appender.logToFile(line);
+            expected.write(line);
+        }
+        appender.detach();
+        byte[] content = expected.toByteArray();
+
+        assertArrayEquals(content, FileAppenderTest.gunzip(path));
+        assertTrue(Files.size(path) < content.length / 4);
+        long blocks = Files.size(BlockGZip.indexPath(path)) / BlockGZip.INDEX_ENTRY_SIZE;
+        assertEquals((content.length + BlockGZip.MAX_BLOCK_SIZE - 1) / BlockGZip.MAX_BLOCK_SIZE, blocks);
+
+        for (int offset : new int[]{0, 1, BlockGZip.MAX_BLOCK_SIZE - 1, BlockGZip.MAX_BLOCK_SIZE,
+                300_000, content.length - 1, content.length}) {
+            byte[] tail = readAll(BlockGZip.openAt(path, offset));
+            assertEquals(content.length - offset, tail.length);
+            assertEquals(content.length == offset ? -1 : content[offset], tail.length == 0 ? -1 : tail[0]);
+        }
+        assertArrayEquals(content, readAll(BlockGZip.openAt(path, Instant.EPOCH)));
+        FileAppenderTest.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testReopenRecoversTruncatedMember() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-bgzf-recover");
+        Path path = directory.resolve("recover.log.gz");
+        FileAppender appender = gzipAppender(path);
+        appender.logToFile("First\n".getBytes(StandardCharsets.UTF_8));
+        appender.flush();
+        appender.logToFile("Second\n".getBytes(StandardCharsets.UTF_8));
+        appender.detach();
+
+        // Simulate a crash: the second member is cut short and missing from the index
+        long indexSize = Files.size(BlockGZip.indexPath(path));
+        try (FileChannel index = FileChannel.open(BlockGZip.indexPath(path), StandardOpenOption.WRITE)) {
+            index.truncate(indexSize - BlockGZip.INDEX_ENTRY_SIZE);
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(file.size() - 3);
+        }
+
+        appender.attach(path);
+        appender.logToFile("Third\n".getBytes(StandardCharsets.UTF_8));
+        appender.detach();
+        assertEquals("First\nThird\n", new String(FileAppenderTest.gunzip(path), StandardCharsets.UTF_8));
+        assertEquals("Third\n", new String(readAll(BlockGZip.openAt(path, 6)), StandardCharsets.UTF_8));
+        FileAppenderTest.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRollMovesIndexWithoutRecompressing() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-bgzf-roll");
+        Path path = directory.resolve("rolled.log.gz");
+        FileAppender appender = gzipAppender(path);
+        appender.logToFile("Before roll\n".getBytes(StandardCharsets.UTF_8));
+        appender.roll();
+        assertTrue(appender.awaitArchives(10_000));
+        appender.detach();
+
+        Path rolled;
+        try (Stream<Path> files = Files.list(directory)) {
+            rolled = files.filter(file -> file.getFileName().toString().endsWith("_rolled.log.gz"))
+                    .findFirst().orElse(null);
+        }
+        assertNotNull(rolled);
+        assertTrue(Files.exists(BlockGZip.indexPath(rolled)));
+        assertEquals("Before roll\n", new String(FileAppenderTest.gunzip(rolled), StandardCharsets.UTF_8));
+        assertEquals(0, Files.size(path));
+        FileAppenderTest.deleteDirectory(directory);
+    }
+}
@@ -0,0 +1,84 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CachedFormatterTest {
+    private static final String[] PATTERNS = {
+            "yyyy-MM-dd HH:mm:ss",
+            "yyyy-MM-dd HH:mm:ss.SSS",
+            "HH:mm:ss,SSSSSS",
+            "SSSSSSSSS HH:mm",
+            "HH:mm:ss.SSS SSS",
+            "EEEE, MMMM d HH:mm:ss.SS",
+            "A",
+            "N",
+            "n",
+            "yyyy-MM-dd'T'HH:mm:ss.SSSXXX VV",
+            "hh:mm:ss a z",
+    };
+
+    private static final String[] ZONES = { "UTC", "Europe/Warsaw", "America/New_York", "Australia/Lord_Howe" };
+
+    @Test
+    public void testMatchesFormatterForRandomInstants() {
+        Random random = new Random(42);
+        for (String pattern : PATTERNS) {
+            for (String zone : ZONES) {
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.of(zone));
+                CachedFormatter cached = new CachedFormatter(formatter);
+                long second = 1_700_000_000L;
+                for (int i = 0; i < 2000; i++) {
+                    // Mostly repeated seconds to exercise the cache, occasionally jump ahead
+                    second += random.nextInt(10) == 0 ? random.nextInt(100_000) : 0;
+                    int nanos = random.nextInt(1_000_000_000);
+                    assertFormatted(formatter, cached, second, nanos);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesFormatterAcrossDaylightSavingTime() {
+        ZoneId warsaw = ZoneId.of("Europe/Warsaw");
+        // Both transitions of 2024
+        long[] transitions = {
+                ZonedDateTime.of(2024, 3, 31, 2, 0, 0, 0, warsaw).toEpochSecond(),
+                ZonedDateTime.of(2024, 10, 27, 2, 0, 0, 0, warsaw).toEpochSecond() + 3600,
+        };
+        for (String pattern : PATTERNS) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(warsaw);
+            CachedFormatter cached = new CachedFormatter(formatter);
+            for (long transition : transitions) {
+                for (long second = transition - 3; second <= transition + 3; second++) {
+                    assertFormatted(formatter, cached, second, 0);
+                    assertFormatted(formatter, cached, second, 999_999_999);
+                    assertFormatted(formatter, cached, second, 5_000_000);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReusesTextWithinSecond() {
+        CachedFormatter cached = new CachedFormatter(LoggerConfig.FULL_DATE_FORMATTER);
+        String first = cached.format(1_700_000_000L, 1);
+        String second = cached.format(1_700_000_000L, 999);
+        assertSame(first, second);
+    }
+
+    private static void assertFormatted(DateTimeFormatter formatter, CachedFormatter cached, long second, int nanos) {
+        String expected = formatter.format(Instant.ofEpochSecond(second, nanos));
+        assertEquals(expected, cached.format(second, nanos));
+        StringBuilder builder = new StringBuilder("prefix");
+        cached.formatTo(second, nanos, builder);
+        assertEquals("prefix" + expected, builder.toString());
+    }
+}
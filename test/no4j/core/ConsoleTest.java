@@ -0,0 +1,105 @@
+package no4j.core;
+
+import no4j.Mocks;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.*;
+
+public class ConsoleTest {
+
+    @Test
+    public void testReplacedStreamIsUsed() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConsole().setDirectOutput(true);
+        ByteArrayOutputStream buffer = Mocks.mockStdout(logger);
+        logger.info("Through the stream");
+        assertTrue(buffer.toString().contains("Through the stream"));
+        assertFalse(logger.getConsole().writesDirectly(false));
+        assertTrue(logger.getConsole().writesDirectly(true));
+        logger.getConsole().setDirectOutput(false);
+    }
+
+    @Test
+    public void testUnbufferedSink() throws IOException {
+        Path testPath = Paths.get("test/resources/test_console_sink.txt");
+        try (FileChannel channel = FileChannel.open(testPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ConsoleSink sink = new ConsoleSink(channel, false);
+            sink.write(ByteBuffer.wrap("Immediate\n".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(10, Files.size(testPath));
+        }
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testBufferedSink() throws IOException {
+        Path testPath = Paths.get("test/resources/test_console_buffered.txt");
+        try (FileChannel channel = FileChannel.open(testPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ConsoleSink sink = new ConsoleSink(channel, true);
+            sink.write(ByteBuffer.wrap("Buffered\n".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(0, Files.size(testPath));
+
+            byte[] large = new byte[ConsoleSink.BUFFER_SIZE + 1];
+            sink.write(ByteBuffer.wrap(large));
+            assertEquals(9 + large.length, Files.size(testPath));
+
+            sink.write(ByteBuffer.wrap("Last\n".getBytes(StandardCharsets.UTF_8)));
+            sink.close();
+            assertEquals(9 + large.length + 5, Files.size(testPath));
+        }
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testDirectOutput() throws IOException {
+        Path outPath = Paths.get("test/resources/test_console_out.txt");
+        Path errPath = Paths.get("test/resources/test_console_err.txt");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        LoggerConfig config = logger.getConfig();
+        config.includeMethod(false);
+        config.setFormatter(DateTimeFormatter.ofPattern("'time'").withZone(ZoneOffset.UTC));
+        config.setLevelPadLength(0);
+        config.setMethodPadLength(0);
+        Console console = logger.getConsole();
+        console.enableColor(true);
+        try (FileChannel out = open(outPath); FileChannel err = open(errPath)) {
+            console.setDirectChannels(out, err);
+            console.setDirectOutput(true);
+            console.setFlushInterval(60_000);
+            assertTrue(console.writesDirectly(false));
+            logger.info("Za\u017c\u00f3\u0142\u0107");
+            logger.error("Failed");
+            assertEquals(0, Files.size(outPath));
+            console.flush();
+            console.setDirectOutput(false);
+            assertFalse(console.writesDirectly(false));
+        }
+        String info = console.getColorByLevel(Level.INFO).sgr, error = console.getColorByLevel(Level.ERROR).sgr;
+        assertEquals("[time] " + info + "[INFO]  Za\u017c\u00f3\u0142\u0107" + Color.RESET.sgr + '\n',
+                new String(Files.readAllBytes(outPath), StandardCharsets.UTF_8));
+        assertEquals("[time] " + error + "[ERROR]  Failed" + Color.RESET.sgr + '\n',
+                new String(Files.readAllBytes(errPath), StandardCharsets.UTF_8));
+        Files.delete(outPath);
+        Files.delete(errPath);
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
@@ -2,11 +2,23 @@ package no4j.core;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 
@@ -31,4 +43,336 @@ public class FileAppenderTest {
         assertEquals(sizeAfter, currentSize);
         Files.delete(testPath);
     }
+
+    @Test
+    public void testFlushBySize() throws IOException {
+        FileAppender appender = new FileAppender();
+        Path testPath = Paths.get("test/resources/test_flush_size.txt");
+        appender.attach(testPath);
+        appender.setFlushBytes(32);
+
+        long sizeBefore = Files.size(testPath);
+        appender.logToFile("0123456789".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        assertEquals(sizeBefore, Files.size(testPath));
+        appender.logToFile("0123456789012345678901".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        assertEquals(sizeBefore + 32, Files.size(testPath));
+
+        appender.detach();
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testReattachKeepsPendingBytes() throws IOException {
+        FileAppender appender = new FileAppender();
+        Path testPath = Paths.get("test/resources/test_reattach.txt");
+        appender.attach(testPath);
+        appender.setFlushBytes(4096);
+        long sizeBefore = Files.size(testPath);
+
+        appender.logToFile("Before\n".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        appender.reattach();
+        assertTrue(appender.isAttached());
+        appender.logToFile("After\n".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        appender.detach();
+        assertEquals(sizeBefore + 13, Files.size(testPath));
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testFlushAtLevel() throws IOException {
+        FileAppender appender = new FileAppender();
+        Path testPath = Paths.get("test/resources/test_flush_level.txt");
+        appender.attach(testPath);
+        appender.setFlushBytes(4096);
+        appender.setFlushLevel(Level.ERROR);
+
+        long sizeBefore = Files.size(testPath);
+        appender.logToFile("Buffered".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        assertEquals(sizeBefore, Files.size(testPath));
+        appender.logToFile("Flushed".getBytes(StandardCharsets.UTF_8), Level.ERROR);
+        assertEquals(sizeBefore + 15, Files.size(testPath));
+
+        appender.detach();
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testBufferedWritesKeepOrderAcrossChunks() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-chunks");
+        Path testPath = directory.resolve("chunks.log");
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setFlushBytes(ChannelSink.BUFFER_SIZE);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5000; i++) {
+            byte[] line = ("Buffered line " + i + '\n').getBytes(StandardCharsets.UTF_8);
+            appender.logToFile(line, Level.INFO);
+            expected.write(line);
+            if (i == 2500) {
+                // Larger than a chunk, written along with the pending chunks
+                byte[] large = new byte[ChannelSink.CHUNK_SIZE + 1];
+                Arrays.fill(large, (byte) 'L');
+                appender.logToFile(large, Level.INFO);
+                expected.write(large);
+            }
+        }
+        appender.flush();
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(testPath));
+        appender.detach();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testFlushByInterval() throws IOException, InterruptedException {
+        FileAppender appender = new FileAppender();
+        Path testPath = Paths.get("test/resources/test_flush_interval.txt");
+        appender.attach(testPath);
+        appender.setFlushBytes(4096);
+        appender.setFlushInterval(10);
+
+        long sizeBefore = Files.size(testPath);
+        appender.logToFile("Idle".getBytes(StandardCharsets.UTF_8), Level.INFO);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.size(testPath) == sizeBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(sizeBefore + 4, Files.size(testPath));
+
+        appender.detach();
+        Files.delete(testPath);
+    }
+
+    @Test
+    public void testRollCompressesInBackground() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-roll");
+        Path testPath = directory.resolve("rolling.log");
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setRolling(true);
+        appender.setRollSize(1024);
+
+        byte[] line = "A line that is going to be rolled\n".getBytes(StandardCharsets.UTF_8);
+        int lines = 0;
+        while (Files.size(testPath) + line.length < 1024) {
+            appender.logToFile(line);
+            lines++;
+        }
+        appender.logToFile(line);
+        lines++;
+        assertEquals(0, Files.size(testPath));
+        assertTrue(appender.awaitArchives(10_000));
+
+        Path[] archives = listArchives(directory);
+        assertEquals(1, archives.length);
+        byte[] decompressed = gunzip(archives[0]);
+        assertEquals(lines * line.length, decompressed.length);
+
+        appender.logToFile(line);
+        assertEquals(line.length, Files.size(testPath));
+        appender.detach();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRollRenamesWithoutCompression() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-rename");
+        Path testPath = directory.resolve("renamed.log");
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setCompressArchives(false);
+
+        byte[] line = "Before roll\n".getBytes(StandardCharsets.UTF_8);
+        appender.logToFile(line);
+        appender.roll();
+        assertTrue(appender.awaitArchives(1000));
+        assertEquals(0, Files.size(testPath));
+        assertEquals(0, listArchives(directory).length);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Path rolled = files.filter(path -> !path.equals(testPath)).findFirst().orElse(null);
+            assertNotNull(rolled);
+            assertTrue(rolled.getFileName().toString().endsWith("renamed.log"));
+            assertArrayEquals(line, Files.readAllBytes(rolled));
+        }
+        appender.detach();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRollsWithinTheSameMillisecondKeepAllArchives() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-collisions");
+        Path testPath = directory.resolve("collisions.log");
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setCompressArchives(false);
+
+        for (int i = 0; i < 20; i++) {
+            appender.logToFile(("Roll " + i).getBytes(StandardCharsets.UTF_8));
+            appender.roll();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(20, files.filter(path -> !path.equals(testPath)).count());
+        }
+        appender.detach();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testFullArchiverDropsInsteadOfRunningOnCaller() throws Exception {
+        CountDownLatch started = new CountDownLatch(1), blocked = new CountDownLatch(1);
+        Archiver.Task blocker = () -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        };
+        List<IOException> reported = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            // One task occupies the thread, the rest fill the queue
+            futures.add(Archiver.submit("blocker", blocker, reported::add));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < Archiver.QUEUE_CAPACITY; i++) {
+                futures.add(Archiver.submit("blocker", blocker, reported::add));
+            }
+            Thread caller = Thread.currentThread();
+            Thread[] ranOn = new Thread[1];
+            Future<?> dropped = Archiver.submit("overflow", () -> ranOn[0] = Thread.currentThread(), reported::add);
+            assertTrue(dropped.isCancelled());
+            assertNotSame(caller, ranOn[0]);
+            assertEquals(1, reported.size());
+            assertTrue(reported.get(0).getMessage().contains("overflow"));
+        } finally {
+            blocked.countDown();
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testRetentionDeletesOldestArchives() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-retention");
+        Path testPath = directory.resolve("retained.log");
+        // Archives of another log file in the same directory are left alone, legacy .zip archives are pruned
+        Path foreign = Files.createFile(directory.resolve("2020-01-01_00-00-00_other.log.gz"));
+        Path legacy = Files.createFile(directory.resolve("2020-01-01_00-00-00_retained.log.zip"));
+        FileAppender appender = new FileAppender();
+        appender.attach(testPath);
+        appender.setMaxArchives(3);
+
+        for (int i = 0; i < 6; i++) {
+            appender.logToFile(("Roll " + i).getBytes(StandardCharsets.UTF_8));
+            appender.roll();
+            assertTrue(appender.awaitArchives(10_000));
+        }
+        Path[] archives = listArchives(directory);
+        assertEquals(4, archives.length);
+        assertTrue(Files.exists(foreign));
+        assertFalse(Files.exists(legacy));
+        for (Path archive : archives) {
+            if (!archive.equals(foreign)) {
+                String content = new String(gunzip(archive), StandardCharsets.UTF_8);
+                assertTrue(content, content.matches("Roll [345]"));
+            }
+        }
+
+        appender.setMaxArchives(0);
+        appender.setMaxArchiveBytes(1);
+        appender.logToFile("Last".getBytes(StandardCharsets.UTF_8));
+        appender.roll();
+        assertTrue(appender.awaitArchives(10_000));
+        assertEquals(1, listArchives(directory).length);
+        appender.detach();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testMappedModeTruncatesToWrittenBytes() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-mapped");
+        Path testPath = directory.resolve("mapped.log");
+        FileAppender appender = new FileAppender();
+        // Regions are released before the file is truncated
+        assertTrue(Unmapper.isSupported());
+        appender.setMode(FileMode.MAPPED);
+        appender.setMappedRegionSize(1024);
+        appender.attach(testPath);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++) {
+            byte[] line = ("Mapped line " + i + '\n').getBytes(StandardCharsets.UTF_8);
+            appender.logToFile(line);
+            expected.write(line);
+        }
+        // Extended by whole regions while attached
+        assertEquals(0, Files.size(testPath) % 1024);
+        appender.detach();
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(testPath));
+
+        // Padding left behind by a crash is trimmed when reopened
+        Files.write(testPath, new byte[300], StandardOpenOption.APPEND);
+        appender.attach(testPath);
+        appender.logToFile("Appended\n".getBytes(StandardCharsets.UTF_8));
+        appender.detach();
+        expected.write("Appended\n".getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(testPath));
+        deleteDirectory(directory);
+    }
+
+    @Test
+    public void testMappedModeRolls() throws IOException {
+        Path directory = Files.createTempDirectory("no4j-mapped-roll");
+        Path testPath = directory.resolve("mapped.log");
+        FileAppender appender = new FileAppender();
+        appender.setMode(FileMode.MAPPED);
+        appender.attach(testPath);
+        appender.setCompressArchives(false);
+        appender.setRolling(true);
+        appender.setRollSize(1024);
+
+        byte[] line = new byte[100];
+        Arrays.fill(line, (byte) 'x');
+        for (int i = 0; i < 11; i++) {
+            appender.logToFile(line);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Path rolled = files.filter(path -> !path.equals(testPath)).findFirst().orElse(null);
+            assertNotNull(rolled);
+            assertEquals(1100, Files.size(rolled));
+        }
+        appender.logToFile(line);
+        appender.detach();
+        assertEquals(100, Files.size(testPath));
+        deleteDirectory(directory);
+    }
+
+    static Path[] listArchives(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".gz")).toArray(Path[]::new);
+        }
+    }
+
+    static byte[] gunzip(Path path) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
 }
@@ -0,0 +1,120 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonLayoutTest {
+
+    @Test
+    public void testPlainMessage() {
+        LogMessage message = new LogMessage("2024-01-01 00:00:00", Level.INFO, "Plain", "Test.method()");
+        assertEquals("{\"time\":\"2024-01-01 00:00:00\",\"level\":\"INFO\",\"method\":\"Test.method()\"," +
+                "\"message\":\"Plain\"}", message.toJson());
+    }
+
+    @Test
+    public void testRawTimeIsIso8601() {
+        LogMessage message = new LogMessage(null, Level.INFO, "Raw", "Test.method()");
+        message.epochSecond = 1704112200;
+        message.nano = 123_456_789;
+        assertTrue(message.toJson().startsWith("{\"time\":\"2024-01-01T12:30:00.123456Z\","));
+    }
+
+    @Test
+    public void testTimeIndependentOfRendering() {
+        LogMessage message = new LogMessage(null, Level.INFO, "Raw", "Test.method()");
+        message.stamp(new CachedFormatter(
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC)));
+        message.epochSecond = 1704112200;
+        message.nano = 123_456_789;
+        String json = message.toJson();
+        assertEquals("2024-01-01 12:30:00.123", message.getTime());
+        assertEquals(json, message.toJson());
+        message.time = message.getTime();
+        assertEquals(json, message.toJson());
+    }
+
+    @Test
+    public void testEscaping() {
+        LogMessage message = new LogMessage("t", Level.WARN, "Quote \" slash \\ tab \t nul \u0000 \u00e9", null);
+        String json = message.toJson();
+        assertTrue(json.contains("\"message\":\"Quote \\\" slash \\\\ tab \\t nul \\u0000 \u00e9\""));
+        assertTrue(json.contains("\"method\":null"));
+        assertEquals("a\\/b\\n", LogMessage.jsonEncode("a/b\n"));
+    }
+
+    @Test
+    public void testTruncationKeepsSurrogatePairs() {
+        LogMessage message = new LogMessage("t", Level.INFO, "ab\ud83d\ude00cd", "m");
+        StringBuilder out = new StringBuilder();
+        JsonLayout.format(message, 3, 0, "", out);
+        assertTrue(out.toString(), out.toString().contains("\"message\":\"ab\""));
+        out.setLength(0);
+        JsonLayout.format(message, 4, 0, "", out);
+        assertTrue(out.toString().contains("\"message\":\"ab\ud83d\ude00\""));
+    }
+
+    @Test
+    public void testParametersAreEscaped() {
+        LogMessage message = new LogMessage("t", Level.INFO, "Value {}", "m");
+        message.params = new Object[]{"\"quoted\""};
+        assertTrue(message.toJson().contains("\"message\":\"Value \\\"quoted\\\"\""));
+    }
+
+    @Test
+    public void testStackAndFields() {
+        StackTraceElement[] stack = {
+                new StackTraceElement("org.app.Service", "run", "Service.java", 42),
+                new StackTraceElement("org.app.Main", "main", null, -1),
+                new StackTraceElement("org.app.Hidden", "call", "Hidden.java", 1),
+        };
+        LogMessage message = new LogMessage("t", Level.ERROR, "Failed", "Service.run(Service.java:42)", stack);
+        LoggerConfig config = LoggerConfig.create();
+        config.setMaxStackTraceDepth(2);
+        LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+        fields.put("service", "api");
+        fields.put("host", "node-1");
+        config.setJsonFields(fields);
+
+        StringBuilder out = new StringBuilder();
+        JsonLayout.format(message, config, out);
+        String json = out.toString();
+        assertTrue(json.endsWith("}\n"));
+        assertTrue(json.contains("\"stack\":[\"org.app.Service.run(Service.java:42)\"," +
+                "\"org.app.Main.main(Unknown Source)\"]"));
+        assertTrue(json.contains(",\"service\":\"api\",\"host\":\"node-1\"}"));
+    }
+
+    @Test
+    public void testFileOutput() throws IOException {
+        Path testPath = Paths.get("test/resources/test_json.log");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.getConfig().setMaxMessageLength(5);
+        logger.getAppender().setFormat(FileFormat.JSON);
+        logger.setOutput(testPath);
+        logger.info("First line");
+        logger.warn("Second");
+        logger.detachOutput();
+
+        List<String> lines = Files.readAllLines(testPath, StandardCharsets.UTF_8);
+        Files.delete(testPath);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"time\":\""));
+        assertTrue(lines.get(0).contains("\"level\":\"INFO\""));
+        assertTrue(lines.get(0).endsWith("\"message\":\"First\"}"));
+        assertTrue(lines.get(1).contains("\"level\":\"WARN\""));
+    }
+}
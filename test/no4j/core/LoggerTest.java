@@ -3,6 +3,8 @@ package no4j.core;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import static no4j.Mocks.mockStderr;
@@ -35,10 +37,82 @@ public class LoggerTest {
         assertTrue(buffer.toString().contains(expectedToContain));
     }
 
+    @Test
+    public void testParameterizedOutput() {
+        Logger logger = getTestLogger(Level.ALL);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+
+        logger.info("user {} took {} ms", "bob", 42);
+        logger.warn("{}{}{}{}", 1, 2, 3, 4);
+        logger.debug("{} {} {} {} {}", 'a', 'b', 'c', 'd', 'e');
+        String output = buffer.toString();
+        assertTrue(output.contains("user bob took 42 ms"));
+        assertTrue(output.contains("1234"));
+        assertTrue(output.contains("a b c d e"));
+    }
+
+    @Test
+    public void testArgumentsNotRenderedWhenDisabled() {
+        Logger logger = getTestLogger(Level.INFO);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+        final boolean[] rendered = { false };
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                rendered[0] = true;
+                return "rendered";
+            }
+        };
+
+        logger.debug("Disabled {}", argument);
+        logger.debug(argument);
+        assertFalse(rendered[0]);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testParameterizedMessageTruncated() {
+        Logger logger = getTestLogger(Level.ALL);
+        logger.getConfig().setMaxMessageLength(5);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+
+        logger.info("{}{}", "abc", "defgh");
+        assertTrue(buffer.toString().contains("abcde\n"));
+        assertFalse(buffer.toString().contains("abcdef"));
+    }
+
+    @Test
+    public void testSupplierInvokedOnlyWhenEnabled() {
+        Logger logger = getTestLogger(Level.INFO);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+        final int[] calls = { 0 };
+
+        logger.debugLazy(() -> calls[0]++);
+        assertEquals(0, calls[0]);
+        logger.infoLazy(() -> "Supplied " + ++calls[0]);
+        assertEquals(1, calls[0]);
+        assertTrue(buffer.toString().contains("Supplied 1"));
+        // Resolves to the String overload
+        logger.info(null);
+        assertTrue(buffer.toString().endsWith("null\n"));
+    }
+
+    @Test
+    public void testLevelGuards() {
+        Logger logger = getTestLogger(Level.WARN);
+        assertTrue(logger.isWarnEnabled());
+        assertTrue(logger.isFatalEnabled());
+        assertFalse(logger.isInfoEnabled());
+        assertFalse(logger.isDebugEnabled());
+        assertTrue(logger.isEnabled(Level.ERROR));
+        assertFalse(logger.isEnabled(Level.OFF));
+        assertFalse(logger.isEnabled(null));
+    }
+
     @SuppressWarnings("all")
     @Test
     public void testGetNullLogger() {
-        Logger logger = Logger.getLogger(null);
+        Logger logger = Logger.getLogger((String) null);
         assertNull(logger);
     }
 
@@ -150,6 +224,26 @@ public class LoggerTest {
         assertEquals(3, split.length);
     }
 
+    @Test
+    public void testTimeFilledForAppenders() {
+        Logger logger = getTestLogger(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        List<LogMessage> messages = new ArrayList<>();
+        logger.addAppender(messages::add);
+
+        long before = System.currentTimeMillis();
+        logger.info("Raw");
+        long after = System.currentTimeMillis();
+        LogMessage message = messages.get(0);
+        assertNotNull(message.time);
+        assertSame(message.time, message.getTime());
+        assertTrue(message.getEpochMillis() >= before && message.getEpochMillis() <= after);
+        assertEquals(message.getEpochMillis(), message.getInstant().toEpochMilli());
+        // Default precision is milliseconds
+        assertTrue(message.getTime().matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}"));
+        assertTrue(logger.formatMessage(message, false).toString().startsWith("[" + message.getTime() + "] "));
+    }
+
     @Test
     public void testStderrRedirectAtWarn() {
         Logger logger = getTestLogger(Level.ALL);
@@ -180,6 +274,41 @@ public class LoggerTest {
         assertTrue(errBuffer.size() > 0);
     }
 
+    @Test
+    public void testCallerMethodResolved() {
+        Logger logger = getTestLogger(Level.ALL);
+        logger.getConfig().includeMethod(true);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+
+        logger.info("Who called?");
+        assertTrue(buffer.toString().contains("LoggerTest.testCallerMethodResolved(LoggerTest.java:"));
+    }
+
+    @Test
+    public void testWrapperFramesSkipped() {
+        Logger logger = getTestLogger(Level.ALL);
+        logger.getConfig().includeMethod(true);
+        ByteArrayOutputStream buffer = mockStdout(logger);
+        Logger.registerWrapper(LogWrapper.class);
+
+        new LogWrapper(logger).log("Wrapped");
+        String output = buffer.toString();
+        assertTrue(output.contains("LoggerTest.testWrapperFramesSkipped(LoggerTest.java:"));
+        assertFalse(output.contains("LogWrapper"));
+    }
+
+    private static class LogWrapper {
+        private final Logger logger;
+
+        LogWrapper(Logger logger) {
+            this.logger = logger;
+        }
+
+        void log(String message) {
+            logger.info(message);
+        }
+    }
+
     // Logger storage tests
     @Test
     public void testLoggersAreTheSame() {
@@ -198,6 +327,85 @@ public class LoggerTest {
         assertFalse(Logger.removeLogger(previousLogger));
     }
 
+    @Test
+    public void testConcurrentGetLoggerReturnsSameLogger() throws InterruptedException {
+        final String name = "concurrent.registry";
+        final int threads = 8;
+        Logger[] loggers = new Logger[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            workers[i] = new Thread(() -> loggers[index] = Logger.getLogger(name));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (Logger logger : loggers) {
+            assertSame(loggers[0], logger);
+        }
+    }
+
+    @Test
+    public void testLoggerPerClass() {
+        Logger logger = Logger.getLogger(LoggerTest.class);
+        assertSame(logger, Logger.getLogger(LoggerTest.class));
+        assertSame(logger, Logger.getLogger(LoggerTest.class.getName()));
+        assertTrue(Logger.removeLogger(logger));
+        Logger newLogger = Logger.getLogger(LoggerTest.class);
+        assertNotSame(logger, newLogger);
+    }
+
+    @Test
+    public void testHierarchicalLevels() {
+        Logger parent = Logger.getLoggerWithLevel("org.hierarchy", Level.WARN);
+        Logger child = Logger.getLogger("org.hierarchy.db");
+        Logger grandChild = Logger.getLogger("org.hierarchy.db.pool");
+        Logger sibling = Logger.getLogger("org.hierarchy-db");
+        assertEquals(Level.WARN, child.getLogLevel());
+        assertEquals(Level.OFF, sibling.getLogLevel());
+        assertEquals(Level.WARN, grandChild.getLogLevel());
+
+        child.setLoggingLevel(Level.DEBUG);
+        assertEquals(Level.DEBUG, grandChild.getLogLevel());
+
+        parent.setLoggingLevel(Level.ERROR);
+        assertEquals(Level.OFF, sibling.getLogLevel());
+        assertEquals(Level.DEBUG, child.getLogLevel());
+        assertEquals(Level.DEBUG, grandChild.getLogLevel());
+
+        child.setLoggingLevel(null);
+        assertEquals(Level.ERROR, child.getLogLevel());
+        assertEquals(Level.ERROR, grandChild.getLogLevel());
+
+        assertTrue(Logger.removeLogger(parent));
+        assertEquals(Level.OFF, grandChild.getLogLevel());
+        Logger.removeLogger(child);
+        Logger.removeLogger(grandChild);
+        Logger.removeLogger(sibling);
+    }
+
+    @Test
+    public void testConcurrentLevelInheritance() throws InterruptedException {
+        Logger parent = Logger.getLoggerWithLevel("org.concurrent", Level.INFO);
+        Thread creator = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                Logger.getLogger("org.concurrent.child" + i);
+            }
+        });
+        creator.start();
+        parent.setLoggingLevel(Level.ERROR);
+        creator.join();
+        for (int i = 0; i < 1000; i++) {
+            Logger child = Logger.getLogger("org.concurrent.child" + i);
+            assertEquals(Level.ERROR, child.getLogLevel());
+            Logger.removeLogger(child);
+        }
+        Logger.removeLogger(parent);
+    }
+
     // Color tests
     @Test
     public void testNoColor() {
@@ -238,6 +446,37 @@ public class LoggerTest {
         testColor(cyanPurple, "Cyan and purple RGB");
     }
 
+    @Test
+    public void testPrefixesFollowChanges() {
+        Logger logger = getTestLogger(Level.INFO);
+        LogMessage logMessage = new LogMessage("time", Level.ERROR, "Changed", "method()");
+        Color before = logger.console.getColorByLevel(Level.ERROR);
+        assertTrue(logger.formatMessage(logMessage, true).toString().contains(before + "[ERROR] "));
+
+        Color after = Color.fgReverse(Color.FG_BLUE);
+        logger.console.setError(after);
+        logger.config.setLevelPadLength(10);
+        String expected = "[time] " + after + "[ERROR]     method() Changed" + Color.RESET + '\n';
+        assertEquals(expected, logger.formatMessage(logMessage, true).toString());
+
+        Logger heir = getTestLogger(Level.INFO);
+        heir.console.inheritColors(logger.console);
+        assertSame(after, heir.console.getColorByLevel(Level.ERROR));
+    }
+
+    @Test
+    public void testCustomLevelPrefixesCached() {
+        Logger logger = getTestLogger(Level.ALL);
+        Level notice = Level.custom(55, "NOTICE");
+        LogMessage logMessage = new LogMessage("time", notice, "Custom", "method()");
+        String expected = "[time] " + logger.console.getColorByLevel(notice) + "[NOTICE] method() Custom"
+                + Color.RESET + '\n';
+        assertEquals(expected, logger.formatMessage(logMessage, true).toString());
+
+        LevelPrefixes prefixes = LevelPrefixes.of(logger.console.palette, 14);
+        assertSame(prefixes.entry(notice), prefixes.entry(notice));
+    }
+
     private static void testColor(Color color, final String message) {
         Logger logger = getTestLogger(Level.INFO);
         logger.console.setInfo(color);
@@ -0,0 +1,146 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class MessageEncoderTest {
+
+    @Test
+    public void testEncodesUtf8() {
+        MessageEncoder encoder = MessageEncoder.acquire();
+        final String text = "za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 \ud83d\ude00";
+        encoder.text.append(text);
+        ByteBuffer bytes = encoder.encode();
+        byte[] actual = new byte[bytes.remaining()];
+        bytes.get(actual);
+        encoder.release();
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), actual);
+    }
+
+    @Test
+    public void testGrowsForLongMessages() {
+        MessageEncoder encoder = MessageEncoder.acquire();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            expected.append('\u0105');
+        }
+        encoder.text.append(expected);
+        ByteBuffer bytes = encoder.encode();
+        encoder.release();
+        assertEquals(20_000, bytes.remaining());
+    }
+
+    @Test
+    public void testReentrantAcquire() {
+        MessageEncoder outer = MessageEncoder.acquire();
+        MessageEncoder inner = MessageEncoder.acquire();
+        assertNotSame(outer, inner);
+        inner.release();
+        outer.release();
+        MessageEncoder again = MessageEncoder.acquire();
+        assertSame(outer, again);
+        again.release();
+    }
+
+    @Test
+    public void testFileOutputAllocatesNothing() throws IOException {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        if (threads == null) {
+            return;
+        }
+        Path testPath = Paths.get("test/resources/test_allocation.txt");
+        Logger logger = newFileLogger(testPath);
+        LoggerConfig config = logger.getConfig();
+        // Resolving the caller walks the stack, which allocates its frames
+        config.includeMethod(false);
+        config.setReuseMessages(true);
+
+        long[] allocated = measureAllocations(threads, logger, 200_000);
+        logger.detachOutput();
+        Files.delete(testPath);
+        assertArrayEquals(new long[allocated.length], allocated);
+    }
+
+    /**
+     * Records what the defaults allocate: every call allocates its message and the frames walked to find the caller
+     */
+    @Test
+    public void testDefaultConfigurationAllocatesPerCall() throws IOException {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        if (threads == null) {
+            return;
+        }
+        Path testPath = Paths.get("test/resources/test_allocation.txt");
+        Logger logger = newFileLogger(testPath);
+        long defaults = sum(measureAllocations(threads, logger, 10_000));
+        logger.getConfig().setReuseMessages(true);
+        long reused = sum(measureAllocations(threads, logger, 10_000));
+        logger.detachOutput();
+        Files.delete(testPath);
+
+        long calls = 10 * 500;
+        assertTrue(defaults >= calls * 16);
+        // Reuse only saves the message, resolving the caller still allocates
+        assertTrue(reused > 0);
+        assertTrue(reused < defaults);
+        assertTrue("Allocated " + defaults / calls + " bytes per call", defaults / calls < 16 * 1024);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        return threads;
+    }
+
+    private static Logger newFileLogger(Path testPath) throws IOException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLoggingLevel(Level.ALL);
+        logger.getConfig().enableConsoleOutput(false);
+        logger.setOutput(testPath);
+        logger.getAppender().setFlushBytes(Long.MAX_VALUE);
+        logger.getAppender().setFlushLevel(Level.OFF);
+        return logger;
+    }
+
+    /**
+     * Returns the bytes allocated by each of 10 rounds of 500 log calls, after a warm-up
+     */
+    private static long[] measureAllocations(com.sun.management.ThreadMXBean threads, Logger logger, int warmUp) {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < warmUp; i++) {
+            logger.info("No garbage");
+        }
+        long[] allocated = new long[10];
+        for (int round = 0; round < allocated.length; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 500; i++) {
+                logger.info("No garbage");
+            }
+            allocated[round] = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        return allocated;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
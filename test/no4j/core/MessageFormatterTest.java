@@ -0,0 +1,57 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageFormatterTest {
+
+    @Test
+    public void testSubstitution() {
+        String actual = MessageFormatter.format("user {} took {} ms", new Object[]{"bob", 15});
+        assertEquals("user bob took 15 ms", actual);
+    }
+
+    @Test
+    public void testMissingAndSurplusArguments() {
+        assertEquals("a {} {}", MessageFormatter.format("{} {} {}", new Object[]{"a"}));
+        assertEquals("a", MessageFormatter.format("{}", new Object[]{"a", "b"}));
+    }
+
+    @Test
+    public void testEscapedPlaceholder() {
+        assertEquals("{} is x", MessageFormatter.format("\\{} is {}", new Object[]{"x"}));
+    }
+
+    @Test
+    public void testEscapedPlaceholderAfterArgumentsRunOut() {
+        assertEquals("x is {} {}", MessageFormatter.format("{} is \\{} {}", new Object[]{"x"}));
+        assertEquals("x {} {}", MessageFormatter.format("{} {} \\{}", new Object[]{"x"}));
+    }
+
+    @Test
+    public void testEscapedPlaceholderWithoutArguments() {
+        assertEquals("{} and {}", MessageFormatter.format("\\{} and {}", new Object[0]));
+        // Plain messages aren't patterns
+        assertEquals("\\{} and {}", MessageFormatter.format("\\{} and {}", null));
+    }
+
+    @Test
+    public void testNullAndArrays() {
+        Object[] args = {null, new int[]{1, 2}, new String[]{"a", "b"}};
+        assertEquals("null [1, 2] [a, b]", MessageFormatter.format("{} {} {}", args));
+    }
+
+    @Test
+    public void testThrowingToString() {
+        Object broken = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken");
+            }
+        };
+        String actual = MessageFormatter.format("value: {}", new Object[]{broken});
+        assertTrue(actual.startsWith("value: ["));
+        assertTrue(actual.contains("IllegalStateException"));
+    }
+}
@@ -39,6 +39,23 @@ public class No4JConfigurationTest {
         }
     }
 
+    @Test
+    public void testReloadStopsAsyncQueues() throws IOException {
+        No4JConfiguration.configure("test/resources/async.ini");
+        Logger logger = Logger.getLogger("test-async");
+        AsyncQueue queue = logger.getAsyncQueue();
+        assertNotNull(queue);
+        assertEquals(128, queue.getCapacity());
+
+        No4JConfiguration.configure("test/resources/async.ini");
+        assertFalse(logger.isAsync());
+        Logger reloaded = Logger.getLogger("test-async");
+        assertNotSame(logger, reloaded);
+        assertTrue(reloaded.isAsync());
+        assertTrue(Logger.removeLogger(reloaded));
+        assertFalse(reloaded.isAsync());
+    }
+
     @Test
     public void testInvalidConfig() throws IOException {
         Logger internal = Logger.getInternalLogger();
@@ -0,0 +1,88 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class PatternLayoutTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+
+    private static LogMessage newMessage(String message) {
+        LogMessage msg = new LogMessage("2024-01-01 12:00:00", Level.INFO, message, "Test.method(Test.java:1)");
+        msg.epochSecond = 1704110400;
+        msg.nano = 123_000_000;
+        msg.thread = "main";
+        msg.logger = "org.app";
+        return msg;
+    }
+
+    private static String format(String pattern, LogMessage msg) {
+        StringBuilder out = new StringBuilder();
+        PatternLayout.compile(pattern, UTC).format(msg, LoggerConfig.create(), null, out);
+        return out.toString();
+    }
+
+    @Test
+    public void testConversions() {
+        String line = format("%d{HH:mm:ss.SSS} %level %thread %logger %method %msg%n", newMessage("Hello"));
+        assertEquals("12:00:00.123 INFO main org.app Test.method(Test.java:1) Hello\n", line);
+        assertEquals("[2024-01-01 12:00:00] 100%", format("[%d] 100%%", newMessage("")));
+    }
+
+    @Test
+    public void testPadding() {
+        assertEquals("INFO    |", format("%-8level|", newMessage("")));
+        assertEquals("    INFO|", format("%8p|", newMessage("")));
+        assertEquals("Hel|", format("%.3msg|", newMessage("Hello")));
+        assertEquals("main" + new String(new char[200]).replace('\0', ' ') + "|",
+                format("%-204thread|", newMessage("")));
+    }
+
+    @Test
+    public void testParametersAndLength() {
+        LogMessage msg = newMessage("{} + {}");
+        msg.params = new Object[]{1, 2};
+        LoggerConfig config = LoggerConfig.create();
+        config.setMaxMessageLength(3);
+        StringBuilder out = new StringBuilder();
+        PatternLayout.compile("%m", UTC).format(msg, config, null, out);
+        assertEquals("1 +", out.toString());
+    }
+
+    @Test
+    public void testStackTrace() {
+        StackTraceElement[] stack = {
+                new StackTraceElement("org.app.Service", "run", "Service.java", 42),
+                new StackTraceElement("org.app.Main", "main", "Main.java", 7),
+        };
+        LogMessage msg = newMessage("Failed");
+        msg.stack = stack;
+        assertEquals("Failed\n    at Main.main(Main.java:7)\n", format("%msg%n", msg));
+        assertEquals("    at Main.main(Main.java:7)\n<Failed>", format("%ex<%msg>", msg));
+    }
+
+    @Test
+    public void testColor() {
+        Color blue = Color.fg(Color.FG_BLUE);
+        StringBuilder out = new StringBuilder();
+        PatternLayout.compile("%-5level %method", UTC).format(newMessage(""), LoggerConfig.create(), blue, out);
+        assertEquals(blue.sgr + "INFO " + Color.RESET.sgr + " Test.method(Test.java:1)", out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownConversion() {
+        PatternLayout.compile("%d %unknown", UTC);
+    }
+
+    @Test
+    public void testLoggerUsesPattern() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.getConfig().setPattern("%level|%msg%n");
+        assertEquals("INFO|Patterned\n", logger.formatMessage(newMessage("Patterned"), false).toString());
+        logger.getConfig().setPattern(null);
+        assertTrue(logger.formatMessage(newMessage("Default"), false).toString().startsWith("[2024-01-01 12:00:00]"));
+    }
+}
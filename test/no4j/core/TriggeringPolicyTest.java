@@ -0,0 +1,56 @@
+package no4j.core;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class TriggeringPolicyTest {
+    private static final ZoneId ZONE = ZoneId.of("Europe/Warsaw");
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ZONE).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testSize() {
+        TriggeringPolicy policy = TriggeringPolicy.size(100);
+        assertFalse(policy.isTriggered(99, 0));
+        assertTrue(policy.isTriggered(100, 0));
+    }
+
+    @Test
+    public void testDaily() {
+        TriggeringPolicy policy = TriggeringPolicy.every(RollInterval.DAILY, ZONE);
+        policy.started(millis(2024, 3, 30, 23, 10));
+        assertFalse(policy.isTriggered(10, millis(2024, 3, 30, 23, 59)));
+        assertTrue(policy.isTriggered(10, millis(2024, 3, 31, 0, 0)));
+        // Nothing to roll in an empty file
+        assertFalse(policy.isTriggered(0, millis(2024, 3, 31, 0, 0)));
+
+        // 23 hour day, clocks go forward
+        policy.started(millis(2024, 3, 31, 0, 0));
+        assertFalse(policy.isTriggered(10, millis(2024, 3, 31, 23, 59)));
+        assertTrue(policy.isTriggered(10, millis(2024, 4, 1, 0, 0)));
+    }
+
+    @Test
+    public void testHourly() {
+        TriggeringPolicy policy = TriggeringPolicy.every(RollInterval.HOURLY, ZONE);
+        policy.started(millis(2024, 1, 1, 10, 0));
+        assertFalse(policy.isTriggered(1, millis(2024, 1, 1, 10, 59)));
+        assertTrue(policy.isTriggered(1, millis(2024, 1, 1, 11, 0)));
+    }
+
+    @Test
+    public void testAnyOf() {
+        TriggeringPolicy policy = TriggeringPolicy.anyOf(TriggeringPolicy.size(100),
+                TriggeringPolicy.every(RollInterval.DAILY, ZONE));
+        policy.started(millis(2024, 1, 1, 10, 0));
+        assertFalse(policy.isTriggered(50, millis(2024, 1, 1, 12, 0)));
+        assertTrue(policy.isTriggered(100, millis(2024, 1, 1, 12, 0)));
+        assertTrue(policy.isTriggered(50, millis(2024, 1, 2, 0, 0)));
+    }
+}